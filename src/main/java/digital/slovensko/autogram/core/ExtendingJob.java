@@ -68,8 +68,8 @@ public class ExtendingJob {
         var level = simpleReport.getSignatureFormat(simpleReport.getFirstSignatureId());
         var isContainer = simpleReport.getContainerType() != null;
 
-        var service = DSSUtils.getServiceForSignatureLevel(level.getSignatureForm(), simpleReport.getContainerType(), signatureValidator.getVerifier());
-        service.setTspSource(settings.getTspSource());
+        var service = DSSUtils.getSharedService(level.getSignatureForm(), simpleReport.getContainerType(),
+                signatureValidator.getCurrentVerifier(), settings.getTspSource());
 
         var params = getTimestampParametersForDocument(level.getSignatureForm(), isContainer);
         var targetSignatureLevel = targetLevelOverride.getSignatureLevel(level);
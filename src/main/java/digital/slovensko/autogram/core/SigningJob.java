@@ -1,6 +1,8 @@
 package digital.slovensko.autogram.core;
 
 import java.io.File;
+import java.security.MessageDigest;
+import java.time.Duration;
 import java.util.Base64;
 import java.util.Date;
 
@@ -12,19 +14,24 @@ import digital.slovensko.autogram.core.eforms.xdc.XDCBuilder;
 import digital.slovensko.autogram.core.eforms.xdc.XDCValidator;
 import digital.slovensko.autogram.core.errors.*;
 import digital.slovensko.autogram.core.util.DSSUtils;
+import digital.slovensko.autogram.core.util.DocumentFormat;
 import digital.slovensko.autogram.core.validation.SignatureValidator;
 import eu.europa.esig.dss.enumerations.SignatureForm;
 import eu.europa.esig.dss.enumerations.SignatureLevel;
 import eu.europa.esig.dss.model.*;
 import eu.europa.esig.dss.model.x509.CertificateToken;
 import eu.europa.esig.dss.pades.PAdESSignatureParameters;
+import eu.europa.esig.dss.signature.AbstractSignatureParameters;
 import eu.europa.esig.dss.spi.exception.DSSExternalResourceException;
 import eu.europa.esig.dss.spi.x509.tsp.TSPSource;
-import eu.europa.esig.dss.spi.validation.CommonCertificateVerifier;
 
 import static digital.slovensko.autogram.core.AutogramMimeType.*;
 
 public class SigningJob {
+    private static final SigningSessionStore sessions = new SigningSessionStore(256, Duration.ofMinutes(10));
+    // XDC containers are written by XDCStreamWriter instead of a DOM and a Saxon identity transformation
+    private static volatile boolean streamingXdcWriterEnabled = false;
+
     private final Responder responder;
     private final DSSDocument document;
     private final SigningParameters parameters;
@@ -35,6 +42,10 @@ public class SigningJob {
         this.responder = responder;
     }
 
+    public static void setStreamingXdcWriterEnabled(boolean enabled) {
+        streamingXdcWriterEnabled = enabled;
+    }
+
     public DSSDocument getDocument() {
         return this.document;
     }
@@ -70,30 +81,22 @@ public class SigningJob {
         token = DSSUtils.parseCertificate(dataToSignStructure.signingCertificate());
 
         var signatureValue = new SignatureValue(token.getSignatureAlgorithm(), Base64.getDecoder().decode(signedData));
-        var commonCertificateVerifier = new CommonCertificateVerifier();
-        var signatureParameters = parameters.getSignatureParameters();
-        parameters.applySignatureReference(document, signatureParameters);
-        var service = DSSUtils.getServiceForSignatureLevel(parameters.getSignatureType(), parameters.getContainer(), commonCertificateVerifier);
-
-        signatureParameters.setSigningCertificate(token);
+        var expectedDataToSign = decodeDataToSign(dataToSignStructure.dataToSign());
+        var signatureParameters = prepareSignatureParameters(token, new Date(dataToSignStructure.signingTime()));
+        var session = sessions.take(expectedDataToSign, SigningSessionStore.digestOf(signatureParameters), document);
         signatureParameters.setCertificateChain(token);
-        var bLevelParameters = signatureParameters.bLevel();
-        if (bLevelParameters == null) {
-            bLevelParameters = new BLevelParameters();
-        }
-        bLevelParameters.setSigningDate(new Date(dataToSignStructure.signingTime()));
-        signatureParameters.setBLevelParams(bLevelParameters);
 
-        if (!BaselineLevel.build(signatureParameters.getSignatureLevel()).equals(BaselineLevel.B))
-            service.setTspSource(tspSource);
+        var serviceTspSource = BaselineLevel.build(signatureParameters.getSignatureLevel()).equals(BaselineLevel.B) ? null : tspSource;
+        var service = DSSUtils.getSharedService(parameters.getSignatureType(), parameters.getContainer(),
+                DSSUtils.getSigningCertificateVerifier(), serviceTspSource);
 
         try {
-            if (signatureParameters.getSignatureLevel().equals(SignatureLevel.PAdES_BASELINE_T)) {
-                ((PAdESSignatureParameters) signatureParameters).setContentSize(9472 * 2);
-            }
-
-            var dataToSign = service.getDataToSign(document, signatureParameters);
-            if (!new String(Base64.getEncoder().encode(dataToSign.getBytes())).equals(dataToSignStructure.dataToSign()))
+            // Data computed in the first phase for the same document and parameters are reused instead of running
+            // getDataToSign again
+            var dataToSign = session != null
+                    ? new ToBeSigned(session.dataToSign())
+                    : service.getDataToSign(document, signatureParameters);
+            if (!MessageDigest.isEqual(dataToSign.getBytes(), expectedDataToSign))
                 throw new DataToSignMismatchException();
 
             if (!service.isValidSignatureValue(dataToSign, signatureValue, token))
@@ -131,12 +134,35 @@ public class SigningJob {
         }
     }
 
+    // Undecodable data can never match, the mismatch is reported by the comparison
+    private static byte[] decodeDataToSign(String dataToSign) {
+        if (dataToSign == null)
+            return new byte[0];
+
+        try {
+            return Base64.getDecoder().decode(dataToSign);
+        } catch (IllegalArgumentException e) {
+            return new byte[0];
+        }
+    }
+
     public DataToSignStructure buildDataToSign(CertificateToken token) {
-        var commonCertificateVerifier = new CommonCertificateVerifier();
+        var service = DSSUtils.getSharedService(parameters.getSignatureType(), parameters.getContainer(),
+                DSSUtils.getSigningCertificateVerifier(), null);
+        var signingTime = new Date();
+        var signatureParameters = prepareSignatureParameters(token, signingTime);
+        var parametersDigest = SigningSessionStore.digestOf(signatureParameters);
+
+        var dataToSign = service.getDataToSign(document, signatureParameters);
+        sessions.put(dataToSign, parametersDigest, document);
+
+        return new DataToSignStructure(Base64.getEncoder().encodeToString(dataToSign.getBytes()), signingTime.getTime(), DSSUtils.encodeCertificate(token));
+    }
+
+    // Both phases prepare the parameters the same way, the second one adds the certificate chain afterwards
+    private AbstractSignatureParameters<?> prepareSignatureParameters(CertificateToken token, Date signingTime) {
         var signatureParameters = parameters.getSignatureParameters();
         parameters.applySignatureReference(document, signatureParameters);
-        var service = DSSUtils.getServiceForSignatureLevel(parameters.getSignatureType(), parameters.getContainer(), commonCertificateVerifier);
-        var signingTime = new Date();
 
         signatureParameters.setSigningCertificate(token);
 
@@ -151,9 +177,7 @@ public class SigningJob {
             ((PAdESSignatureParameters)signatureParameters).setContentSize(9472*2);
         }
 
-        var dataToSign = Base64.getEncoder().encode(service.getDataToSign(document, signatureParameters).getBytes());
-
-        return new DataToSignStructure(new String(dataToSign), signingTime.getTime(), DSSUtils.encodeCertificate(token));
+        return signatureParameters;
     }
 
     public static FileDocument createDSSFileDocumentFromFile(File file) {
@@ -173,7 +197,8 @@ public class SigningJob {
 
     private static SigningJob build(DSSDocument document, SigningParameters params, Responder responder) {
         if (params.shouldCreateXdc() && !isXDC(document.getMimeType()) && !isAsice(document.getMimeType()))
-            document = XDCBuilder.transform(params, document.getName(), EFormUtils.getXmlFromDocument(document));
+            document = XDCBuilder.transform(params, document.getName(), EFormUtils.getXmlFromDocument(document),
+                    streamingXdcWriterEnabled);
 
         if (isTxt(document.getMimeType()))
             document.setMimeType(AutogramMimeType.TEXT_WITH_CHARSET);
@@ -197,7 +222,8 @@ public class SigningJob {
     }
 
     private static SigningParameters getParametersForFile(FileDocument document, boolean checkPDFACompliance, SignatureForm pdfSignatureForm, boolean isEn319132, BaselineLevel baselineLevel, boolean plainXmlEnabled) {
-        var level = SignatureValidator.getSignedDocumentSignatureLevel(SignatureValidator.getSignedDocumentSimpleReport(document));
+        var report = SignatureValidator.getSignedDocumentSimpleReport(document, DocumentFormat.detect(document));
+        var level = SignatureValidator.getSignedDocumentSignatureLevel(report);
         if (level != null) switch (level.getSignatureForm()) {
             case PAdES:
                 return SigningParameters.buildForPDF(document, checkPDFACompliance, isEn319132, baselineLevel);
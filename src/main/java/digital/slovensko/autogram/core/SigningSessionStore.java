@@ -0,0 +1,87 @@
+package digital.slovensko.autogram.core;
+
+import digital.slovensko.autogram.core.util.LruCache;
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.model.ToBeSigned;
+import eu.europa.esig.dss.signature.AbstractSignatureParameters;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+
+/**
+ * Keeps ToBeSigned data between the two phases of external signing, so the second phase does not have to compute
+ * them again. A session is only used for the same document and the same prepared signature parameters, which
+ * include the certificate and the signing time. Sessions are bounded in count and expire after a while, a missing
+ * session only means the data are computed again.
+ */
+class SigningSessionStore {
+    private static final DigestAlgorithm DIGEST_ALGORITHM = DigestAlgorithm.SHA256;
+
+    private final LruCache<String, SigningSession> sessions;
+    private final long timeToLiveMillis;
+
+    SigningSessionStore(int maxSessions, Duration timeToLive) {
+        this.sessions = new LruCache<>(maxSessions);
+        this.timeToLiveMillis = timeToLive.toMillis();
+    }
+
+    void put(ToBeSigned dataToSign, byte[] parametersDigest, DSSDocument document) {
+        if (parametersDigest == null)
+            return;
+
+        var session = new SigningSession(dataToSign.getBytes(), parametersDigest,
+                document.getDigestValue(DIGEST_ALGORITHM), System.currentTimeMillis() + timeToLiveMillis);
+
+        sessions.put(keyOf(dataToSign.getBytes()), session);
+    }
+
+    // Sessions are single use, a matching one is removed from the store
+    SigningSession take(byte[] dataToSign, byte[] parametersDigest, DSSDocument document) {
+        var session = sessions.remove(keyOf(dataToSign));
+        if (session == null || session.expiresAt() < System.currentTimeMillis() || parametersDigest == null)
+            return null;
+
+        if (!MessageDigest.isEqual(session.parametersDigest(), parametersDigest))
+            return null;
+
+        if (!MessageDigest.isEqual(session.documentDigest(), document.getDigestValue(DIGEST_ALGORITHM)))
+            return null;
+
+        return session;
+    }
+
+    /**
+     * Digest of the serialized signature parameters, taken before getDataToSign adds its own state to them. Returns
+     * null when the parameters can not be serialized, such data are never reused.
+     */
+    static byte[] digestOf(AbstractSignatureParameters<?> signatureParameters) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM.getJavaName());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        try (var output = new ObjectOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), digest))) {
+            output.writeObject(signatureParameters);
+        } catch (IOException e) {
+            return null;
+        }
+
+        return digest.digest();
+    }
+
+    private static String keyOf(byte[] dataToSign) {
+        return HexFormat.of().formatHex(eu.europa.esig.dss.spi.DSSUtils.digest(DIGEST_ALGORITHM, dataToSign));
+    }
+
+    record SigningSession(byte[] dataToSign, byte[] parametersDigest, byte[] documentDigest, long expiresAt) {
+    }
+}
@@ -1,7 +1,8 @@
 package digital.slovensko.autogram.core.batch;
 
-import java.util.Date;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import digital.slovensko.autogram.core.dto.SigningKey;
 import digital.slovensko.autogram.core.errors.BatchEndedException;
@@ -13,19 +14,20 @@ import org.slf4j.LoggerFactory;
 /**
  * Batch is a session for signing multiple documents with the same key.
  * This class is used for checking runtime conditions and tracking progress.
+ * State and counters are atomic, jobs of one batch may be added and completed concurrently.
  */
 public class Batch {
     private static final Logger LOGGER = LoggerFactory.getLogger(Batch.class);
     private final String batchId = generateNewBatchId();
     private final int totalNumberOfDocuments;
 
-    private BatchState state = BatchState.INITIALIZED;
-    private SigningKey signingKey = null;
+    // State and key are published together, a batch is never seen started without its key
+    private final AtomicReference<StateAndKey> state = new AtomicReference<>(new StateAndKey(BatchState.INITIALIZED, null));
 
-    private Date expriationDate = new Date(System.currentTimeMillis() + 1000 * 60 * 10);
-    private int addedDocumentsCount = 0;
-    private int successfulDocumentsCount = 0;
-    private int failedDocumentsCount = 0;
+    private volatile long expirationTime = System.currentTimeMillis() + 1000 * 60 * 10;
+    private final AtomicInteger addedDocumentsCount = new AtomicInteger();
+    private final AtomicInteger successfulDocumentsCount = new AtomicInteger();
+    private final AtomicInteger failedDocumentsCount = new AtomicInteger();
 
     public Batch(int totalNumberOfDocuments) {
         this.totalNumberOfDocuments = totalNumberOfDocuments;
@@ -33,42 +35,46 @@ public class Batch {
     }
 
     public void start(SigningKey key) {
-        if (state != BatchState.INITIALIZED)
+        var current = state.get();
+        if (current.state() != BatchState.INITIALIZED || !state.compareAndSet(current, new StateAndKey(BatchState.STARTED, key)))
             throw new BatchEndedException("Nie je možné opätovne spustiť hromadné podpisovanie");
-        state = BatchState.STARTED;
-        signingKey = key;
     }
 
     public void addJob(String batchId) {
         validate(batchId);
 
-        if (this.totalNumberOfDocuments <= this.addedDocumentsCount)
-            throw new IllegalAccessError("Sent more sign requests than declared at start");
+        while (true) {
+            var added = addedDocumentsCount.get();
+            if (this.totalNumberOfDocuments <= added)
+                throw new IllegalAccessError("Sent more sign requests than declared at start");
 
-        addedDocumentsCount++;
+            if (addedDocumentsCount.compareAndSet(added, added + 1))
+                return;
+        }
     }
 
     public void onJobSuccess() {
-        successfulDocumentsCount++;
+        successfulDocumentsCount.incrementAndGet();
         LOGGER.info("Batch " + batchId + " success");
         log();
     }
 
     public void onJobFailure() {
-        failedDocumentsCount++;
+        failedDocumentsCount.incrementAndGet();
         LOGGER.info("Batch " + batchId + " failed");
         log();
     }
 
     public void end() {
-        state = BatchState.ENDED;
+        state.updateAndGet(current -> new StateAndKey(BatchState.ENDED, current.signingKey()));
     }
 
     private void validateInternal() {
-        if (state == BatchState.INITIALIZED)
+        var currentState = state.get().state();
+        if (currentState == BatchState.INITIALIZED)
             throw new BatchEndedException("Hromadné podpisovanie nebolo začaté");
 
-        if (state == BatchState.ENDED)
+        if (currentState == BatchState.ENDED)
             throw new BatchEndedException("Hromadné podpisovanie bolo ukončené");
 
         if (isExpired()) {
@@ -91,7 +97,7 @@ public class Batch {
     }
 
     public boolean isEnded() {
-        return state == BatchState.ENDED;
+        return state.get().state() == BatchState.ENDED;
     }
 
     public boolean isAllProcessed() {
@@ -99,7 +105,7 @@ public class Batch {
     }
 
     public boolean isKeyChangeAllowed() {
-        return state == BatchState.INITIALIZED;
+        return state.get().state() == BatchState.INITIALIZED;
     }
 
     public int getTotalNumberOfDocuments() {
@@ -107,11 +113,11 @@ public class Batch {
     }
 
     public int getProcessedDocumentsCount(){
-        return successfulDocumentsCount + failedDocumentsCount;
+        return successfulDocumentsCount.get() + failedDocumentsCount.get();
     }
 
     public SigningKey getSigningKey() {
-        return signingKey;
+        return state.get().signingKey();
     }
 
     // private
@@ -120,15 +126,18 @@ public class Batch {
     }
 
     private boolean isExpired() {
-        return expriationDate.before(new Date());
+        return expirationTime < System.currentTimeMillis();
     }
 
     public void resetExpirationDate() {
-        expriationDate = new Date(System.currentTimeMillis() + 1000 * 60 * 10); // 1 minute
+        expirationTime = System.currentTimeMillis() + 1000 * 60 * 10; // 1 minute
     }
 
     public void log() {
-        LOGGER.info("Batch " + batchId + " state: " + state + " processed: " + addedDocumentsCount + " total: " + totalNumberOfDocuments);
+        LOGGER.info("Batch " + batchId + " state: " + state.get().state() + " processed: " + addedDocumentsCount.get() + " total: " + totalNumberOfDocuments);
+    }
+
+    private record StateAndKey(BatchState state, SigningKey signingKey) {
     }
 
 }
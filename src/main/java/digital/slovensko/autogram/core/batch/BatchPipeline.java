@@ -0,0 +1,100 @@
+package digital.slovensko.autogram.core.batch;
+
+import digital.slovensko.autogram.core.Responder;
+import digital.slovensko.autogram.core.SigningJob;
+import digital.slovensko.autogram.core.dto.SigningKey;
+import digital.slovensko.autogram.core.errors.AutogramException;
+import digital.slovensko.autogram.core.errors.BatchEndedException;
+import digital.slovensko.autogram.core.errors.UnrecognizedException;
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.model.SignatureValue;
+import eu.europa.esig.dss.model.ToBeSigned;
+import eu.europa.esig.dss.spi.x509.tsp.TSPSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Signs documents of one started batch concurrently. Building the job (XDC, parameters) and computing the data
+ * to sign run on virtual threads, only the signing itself is serialized when the token cannot sign in parallel.
+ * Every document is admitted through Batch.addJob and reported through ResponderInBatch, so the batch counters and
+ * state are updated as each document completes.
+ */
+public class BatchPipeline implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchPipeline.class);
+
+    private final Batch batch;
+    private final TSPSource tspSource;
+    private final ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor();
+    private final ReentrantLock signingLock = new ReentrantLock();
+    private final AtomicBoolean completionLogged = new AtomicBoolean();
+    private final long startedAt = System.currentTimeMillis();
+
+    public BatchPipeline(Batch batch, TSPSource tspSource) {
+        this.batch = batch;
+        this.tspSource = tspSource;
+    }
+
+    /**
+     * Admits a document into the batch and signs it in the background. The job factory builds the SigningJob with
+     * the given responder on the virtual thread. The returned future completes once the responder was notified.
+     */
+    public CompletableFuture<Void> submit(String batchId, Function<Responder, SigningJob> jobFactory, Responder responder) {
+        batch.addJob(batchId);
+        var responderInBatch = new ResponderInBatch(responder, batch);
+
+        return CompletableFuture.runAsync(() -> process(jobFactory, responderInBatch), executorService);
+    }
+
+    private void process(Function<Responder, SigningJob> jobFactory, ResponderInBatch responder) {
+        try {
+            if (batch.isEnded())
+                throw new BatchEndedException("Hromadné podpisovanie bolo ukončené");
+
+            var job = jobFactory.apply(responder);
+            var signingKey = batch.getSigningKey();
+            var dataToSign = job.buildDataToSign(signingKey.getCertificate());
+            var toBeSigned = new ToBeSigned(Base64.getDecoder().decode(dataToSign.dataToSign()));
+            var signatureValue = sign(signingKey, toBeSigned, job.getParameters().getDigestAlgorithm());
+
+            job.signWithSignedDataAndRespond(dataToSign, Base64.getEncoder().encodeToString(signatureValue.getValue()), tspSource);
+
+        } catch (AutogramException e) {
+            responder.onError(e);
+        } catch (Exception e) {
+            responder.onError(new UnrecognizedException(e));
+        }
+
+        if (batch.isAllProcessed() && completionLogged.compareAndSet(false, true))
+            LOGGER.info("Batch processed {} documents in {} ms", batch.getProcessedDocumentsCount(), getElapsedMillis());
+    }
+
+    private SignatureValue sign(SigningKey signingKey, ToBeSigned toBeSigned, DigestAlgorithm digestAlgorithm) {
+        if (!signingKey.requiresSerializedSigning())
+            return signingKey.sign(toBeSigned, digestAlgorithm);
+
+        signingLock.lock();
+        try {
+            return signingKey.sign(toBeSigned, digestAlgorithm);
+        } finally {
+            signingLock.unlock();
+        }
+    }
+
+    public long getElapsedMillis() {
+        return System.currentTimeMillis() - startedAt;
+    }
+
+    // Waits for the submitted documents to finish
+    @Override
+    public void close() {
+        executorService.close();
+    }
+}
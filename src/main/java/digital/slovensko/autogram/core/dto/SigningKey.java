@@ -6,12 +6,18 @@ import eu.europa.esig.dss.model.ToBeSigned;
 import eu.europa.esig.dss.model.x509.CertificateToken;
 import eu.europa.esig.dss.token.AbstractKeyStoreTokenConnection;
 import eu.europa.esig.dss.token.DSSPrivateKeyEntry;
+import eu.europa.esig.dss.token.KeyStoreSignatureTokenConnection;
 
 public record SigningKey (AbstractKeyStoreTokenConnection token, DSSPrivateKeyEntry privateKey) {
     public SignatureValue sign(ToBeSigned dataToSign, DigestAlgorithm algo) {
         return token.sign(dataToSign, algo, privateKey);
     }
 
+    // Software keystores sign with a new Signature instance per call, hardware tokens hold a single session
+    public boolean requiresSerializedSigning() {
+        return !(token instanceof KeyStoreSignatureTokenConnection);
+    }
+
     public CertificateToken getCertificate() {
         return privateKey.getCertificate();
     }
@@ -0,0 +1,134 @@
+package digital.slovensko.autogram.core.eforms;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only, memory mapped bundle of eForm resources built by {@link EFormResourceBundleGenerator}. Resources are
+ * keyed by their url without the scheme, e.g. "data.gov.sk/doc/egov/eform/App.GeneralAgenda/1.9/schema.xsd", and
+ * carry digests and XSLT output methods computed when the bundle was generated.
+ *
+ * <p>Layout: the magic, format version and index length, the index with the bundle version and for every resource
+ * its key, offset and length in the data section and its precomputed artefacts, then the data section.</p>
+ */
+public class EFormResourceBundle {
+    static final byte[] MAGIC = "AGEFORMS".getBytes(StandardCharsets.US_ASCII);
+    static final int FORMAT_VERSION = 1;
+
+    private final String version;
+    private final Map<String, Entry> entries;
+    private final ByteBuffer data;
+
+    private EFormResourceBundle(String version, Map<String, Entry> entries, ByteBuffer data) {
+        this.version = version;
+        this.entries = entries;
+        this.data = data;
+    }
+
+    public static EFormResourceBundle open(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var header = ByteBuffer.allocate(MAGIC.length + 8);
+            if (!readFully(channel, header))
+                throw new IOException("Not an eForm resource bundle: " + file);
+
+            header.flip();
+
+            var magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC))
+                throw new IOException("Not an eForm resource bundle: " + file);
+
+            var formatVersion = header.getInt();
+            if (formatVersion != FORMAT_VERSION)
+                throw new IOException("Unsupported eForm resource bundle format version " + formatVersion + ": " + file);
+
+            var indexLength = header.getInt();
+            var dataStart = (long) header.capacity() + indexLength;
+            var dataLength = channel.size() - dataStart;
+            if (indexLength < 0 || dataLength < 0 || dataLength > Integer.MAX_VALUE)
+                throw new IOException("Invalid eForm resource bundle: " + file);
+
+            var index = ByteBuffer.allocate(indexLength);
+            if (!readFully(channel, index))
+                throw new IOException("Truncated eForm resource bundle: " + file);
+
+            var data = channel.map(FileChannel.MapMode.READ_ONLY, dataStart, dataLength);
+            try (var input = new DataInputStream(new ByteArrayInputStream(index.array()))) {
+                var version = input.readUTF();
+                var count = input.readInt();
+                var entries = new HashMap<String, Entry>(count * 2);
+                for (var i = 0; i < count; i++) {
+                    var key = input.readUTF();
+                    var offset = input.readInt();
+                    var length = input.readInt();
+                    if (offset < 0 || length < 0 || (long) offset + length > dataLength)
+                        throw new IOException("Invalid eForm resource bundle entry " + key + ": " + file);
+
+                    var artefactCount = input.readUnsignedShort();
+                    var artefacts = new HashMap<String, String>(artefactCount * 2);
+                    for (var j = 0; j < artefactCount; j++)
+                        artefacts.put(input.readUTF(), input.readUTF());
+
+                    entries.put(key, new Entry(offset, length, artefacts));
+                }
+
+                return new EFormResourceBundle(version, entries, data);
+            }
+        }
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            if (channel.read(buffer) < 0)
+                return false;
+
+        return true;
+    }
+
+    static String keyOf(String url) {
+        var schemeEnd = url.indexOf("://");
+        return schemeEnd < 0 ? url : url.substring(schemeEnd + 3);
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public Set<String> getKeys() {
+        return entries.keySet();
+    }
+
+    public boolean contains(String url) {
+        return entries.containsKey(keyOf(url));
+    }
+
+    // Returns null when the bundle does not contain the resource
+    public byte[] getResource(String url) {
+        var entry = entries.get(keyOf(url));
+        if (entry == null)
+            return null;
+
+        var content = new byte[entry.length];
+        data.slice(entry.offset, entry.length).get(content);
+
+        return content;
+    }
+
+    String getArtefact(String url, String key) {
+        var entry = entries.get(keyOf(url));
+        return entry == null ? null : entry.artefacts.get(key);
+    }
+
+    private record Entry(int offset, int length, Map<String, String> artefacts) {
+    }
+}
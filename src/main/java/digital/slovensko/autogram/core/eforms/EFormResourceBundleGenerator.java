@@ -0,0 +1,132 @@
+package digital.slovensko.autogram.core.eforms;
+
+import digital.slovensko.autogram.core.errors.AutogramException;
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+
+import javax.xml.crypto.dsig.CanonicalizationMethod;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static digital.slovensko.autogram.core.eforms.EFormUtils.ENCODING;
+import static digital.slovensko.autogram.core.eforms.EFormUtils.computeDigest;
+import static digital.slovensko.autogram.core.eforms.EFormUtils.extractTransformationOutputMimeTypeString;
+
+/**
+ * Builds an {@link EFormResourceBundle} from a local mirror of the eForm sources. The first directory level of the
+ * mirror is the host, so "data.gov.sk/doc/egov/eform/App.GeneralAgenda/1.9/schema.xsd" in the mirror is served for
+ * https://data.gov.sk/doc/egov/eform/App.GeneralAgenda/1.9/schema.xsd.
+ */
+public class EFormResourceBundleGenerator {
+    public static final List<String> DEFAULT_CANONICALIZATION_METHODS = List.of(
+            CanonicalizationMethod.INCLUSIVE,
+            CanonicalizationMethod.INCLUSIVE_WITH_COMMENTS,
+            CanonicalizationMethod.EXCLUSIVE,
+            CanonicalizationMethod.EXCLUSIVE_WITH_COMMENTS);
+
+    private EFormResourceBundleGenerator() {
+    }
+
+    public static void generate(Path mirrorDirectory, Path bundleFile, String version) throws IOException {
+        generate(mirrorDirectory, bundleFile, version, DEFAULT_CANONICALIZATION_METHODS);
+    }
+
+    public static void generate(Path mirrorDirectory, Path bundleFile, String version,
+                                List<String> canonicalizationMethods) throws IOException {
+        List<Path> files;
+        try (var paths = Files.walk(mirrorDirectory)) {
+            files = paths.filter(Files::isRegularFile).sorted().toList();
+        }
+
+        var index = new ByteArrayOutputStream();
+        var offset = 0L;
+        try (var output = new DataOutputStream(index)) {
+            output.writeUTF(version);
+            output.writeInt(files.size());
+            for (var file : files) {
+                var content = Files.readAllBytes(file);
+                if (offset + content.length > Integer.MAX_VALUE)
+                    throw new IOException("eForm resource bundle would exceed 2 GB");
+
+                var artefacts = computeArtefacts(file.getFileName().toString(), content, canonicalizationMethods);
+                output.writeUTF(keyOf(mirrorDirectory, file));
+                output.writeInt((int) offset);
+                output.writeInt(content.length);
+                output.writeShort(artefacts.size());
+                for (var artefact : artefacts.entrySet()) {
+                    output.writeUTF(artefact.getKey());
+                    output.writeUTF(artefact.getValue());
+                }
+
+                offset += content.length;
+            }
+        }
+
+        var parent = bundleFile.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        var temp = Files.createTempFile(parent, "eforms", ".tmp");
+        try {
+            try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                output.write(EFormResourceBundle.MAGIC);
+                output.writeInt(EFormResourceBundle.FORMAT_VERSION);
+                output.writeInt(index.size());
+                index.writeTo(output);
+                for (var file : files)
+                    Files.copy(file, output);
+            }
+
+            Files.move(temp, bundleFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String keyOf(Path mirrorDirectory, Path file) {
+        var parts = new ArrayList<String>();
+        for (var part : mirrorDirectory.relativize(file))
+            parts.add(part.toString());
+
+        return String.join("/", parts);
+    }
+
+    // Schemas are digested strictly and stylesheets relaxed, the same way the eForm resources compute them
+    private static Map<String, String> computeArtefacts(String fileName, byte[] content,
+                                                        List<String> canonicalizationMethods) {
+        var artefacts = new LinkedHashMap<String, String>();
+        var isSchema = fileName.endsWith(".xsd");
+        var isStylesheet = fileName.endsWith(".xsl") || fileName.endsWith(".xslt");
+        if (!isSchema && !isStylesheet)
+            return artefacts;
+
+        for (var canonicalizationMethod : canonicalizationMethods) {
+            try {
+                artefacts.put(EFormResourceCache.digestKey(canonicalizationMethod, isStylesheet),
+                        computeDigest(content, canonicalizationMethod, DigestAlgorithm.SHA256, ENCODING, isStylesheet));
+            } catch (AutogramException e) {
+                // resolved at runtime like a resource outside of the bundle
+            }
+        }
+
+        if (isStylesheet) {
+            try {
+                var outputMethod = extractTransformationOutputMimeTypeString(new String(content, ENCODING), true);
+                if (outputMethod != null)
+                    artefacts.put(EFormResourceCache.OUTPUT_METHOD, outputMethod);
+
+            } catch (AutogramException e) {
+                // resolved at runtime like a resource outside of the bundle
+            }
+        }
+
+        return artefacts;
+    }
+}
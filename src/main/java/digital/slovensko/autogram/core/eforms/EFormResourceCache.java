@@ -0,0 +1,159 @@
+package digital.slovensko.autogram.core.eforms;
+
+import digital.slovensko.autogram.core.eforms.dto.ManifestXsltEntry;
+import digital.slovensko.autogram.core.util.LruCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * In-memory tier of eForm resources keyed by URL. Concurrent misses on the same URL wait for a single download.
+ * Expired resources are still served while one background refresh replaces them, so a form that is in use never
+ * waits for the network again. Parsed artefacts are kept next to the content and survive a refresh that brings
+ * the same bytes.
+ */
+class EFormResourceCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EFormResourceCache.class);
+    private static final long RETRY_AFTER_FAILED_REFRESH_MILLIS = 300000;  // 5 minutes
+
+    static final String OUTPUT_METHOD = "output-method";
+
+    private final LruCache<String, Resource> resources;
+    private final ConcurrentHashMap<String, CompletableFuture<Resource>> inFlight = new ConcurrentHashMap<>();
+    private final long expirationMillis;
+
+    EFormResourceCache(int maxEntries, long maxBytes, long expirationMillis) {
+        this.resources = new LruCache<>(maxEntries, maxBytes, resource -> resource.content.length);
+        this.expirationMillis = expirationMillis;
+    }
+
+    // Returns null when the resource does not exist, the loader returns null in that case
+    Resource get(String url, Function<String, byte[]> loader) {
+        var resource = resources.get(url);
+        if (resource != null) {
+            if (resource.refreshAfter <= System.currentTimeMillis())
+                refreshInBackground(url, resource, loader);
+
+            return resource;
+        }
+
+        var future = new CompletableFuture<Resource>();
+        var running = inFlight.putIfAbsent(url, future);
+        if (running != null)
+            return await(running);
+
+        try {
+            var content = loader.apply(url);
+            var loaded = content == null ? null : new Resource(content, System.currentTimeMillis() + expirationMillis);
+            if (loaded != null)
+                resources.put(url, loaded);
+
+            future.complete(loaded);
+            return loaded;
+
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+
+        } finally {
+            inFlight.remove(url, future);
+        }
+    }
+
+    static String digestKey(String canonicalizationMethod, boolean allowRelaxedStylesheetParsing) {
+        return "digest|" + canonicalizationMethod + "|" + allowRelaxedStylesheetParsing;
+    }
+
+    long getHits() {
+        return resources.getHits();
+    }
+
+    long getMisses() {
+        return resources.getMisses();
+    }
+
+    void clear() {
+        resources.clear();
+    }
+
+    private void refreshInBackground(String url, Resource stale, Function<String, byte[]> loader) {
+        var future = new CompletableFuture<Resource>();
+        if (inFlight.putIfAbsent(url, future) != null)
+            return;
+
+        Thread.ofVirtual().name("eform-resource-refresh").start(() -> {
+            var refreshed = stale;
+            try {
+                var content = loader.apply(url);
+                var refreshAfter = System.currentTimeMillis() + expirationMillis;
+                if (content == null) {
+                    stale.refreshAfter = System.currentTimeMillis() + RETRY_AFTER_FAILED_REFRESH_MILLIS;
+                } else if (Arrays.equals(content, stale.content)) {
+                    stale.refreshAfter = refreshAfter;
+                } else {
+                    refreshed = new Resource(content, refreshAfter);
+                    resources.put(url, refreshed);
+                }
+
+            } catch (RuntimeException e) {
+                LOGGER.warn("Unable to refresh eForm resource {}, serving the cached one: {}", url, e.getMessage());
+                stale.refreshAfter = System.currentTimeMillis() + RETRY_AFTER_FAILED_REFRESH_MILLIS;
+
+            } finally {
+                future.complete(refreshed);
+                inFlight.remove(url, future);
+            }
+        });
+    }
+
+    private static Resource await(CompletableFuture<Resource> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+
+            throw e;
+        }
+    }
+
+    static class Resource {
+        private final byte[] content;
+        private final ConcurrentHashMap<String, String> artefacts = new ConcurrentHashMap<>();
+        private volatile List<ManifestXsltEntry> manifestXsltEntries;
+        private volatile long refreshAfter;
+
+        private Resource(byte[] content, long refreshAfter) {
+            this.content = content;
+            this.refreshAfter = refreshAfter;
+        }
+
+        // Shared by all callers, must not be modified
+        byte[] getContent() {
+            return content;
+        }
+
+        // Failed computations are not remembered, the exception reaches the caller every time
+        String getArtefact(String key, Supplier<String> artefact) {
+            return artefacts.computeIfAbsent(key, k -> artefact.get());
+        }
+
+        // Only what the manifest itself declares may be kept here, nothing that depends on other resources
+        List<ManifestXsltEntry> getManifestXsltEntries(Supplier<List<ManifestXsltEntry>> parser) {
+            var entries = manifestXsltEntries;
+            if (entries == null) {
+                entries = List.copyOf(parser.get());
+                manifestXsltEntries = entries;
+            }
+
+            return entries;
+        }
+    }
+}
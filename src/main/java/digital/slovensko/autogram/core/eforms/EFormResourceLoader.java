@@ -1,11 +1,23 @@
 package digital.slovensko.autogram.core.eforms;
 
 import static digital.slovensko.autogram.core.eforms.EFormUtils.computeDigest;
+import static digital.slovensko.autogram.core.eforms.EFormUtils.getXmlFromDocument;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
@@ -16,26 +28,129 @@ import digital.slovensko.autogram.core.errors.XMLValidationException;
 import eu.europa.esig.dss.enumerations.DigestAlgorithm;
 import eu.europa.esig.dss.model.DSSDocument;
 import eu.europa.esig.dss.model.DSSException;
+import eu.europa.esig.dss.model.InMemoryDocument;
 import eu.europa.esig.dss.service.http.commons.CommonsDataLoader;
 import eu.europa.esig.dss.service.http.commons.FileCacheDataLoader;
 import eu.europa.esig.dss.spi.exception.DSSExternalResourceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 public class EFormResourceLoader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EFormResourceLoader.class);
+    private static final long CACHE_EXPIRATION_TIME = 21600000;  // 6 hours
+    private static final EFormResourceCache SHARED_CACHE = newCache();
+    private static volatile EFormResourceBundle sharedBundle;
+
     private final FileCacheDataLoader dataLoader;
+    private final EFormResourceCache cache;
+    private final EFormResourceBundle bundle;
+    private Duration parallelResolutionDeadline;
 
     public EFormResourceLoader() {
         dataLoader = new FileCacheDataLoader();
-        dataLoader.setCacheExpirationTime(21600000);  // 6 hours
+        dataLoader.setCacheExpirationTime(CACHE_EXPIRATION_TIME);
         dataLoader.setDataLoader(new CommonsDataLoader());
+        cache = SHARED_CACHE;
+        bundle = null;
+        parallelResolutionDeadline = Duration.ofSeconds(60);
     }
 
+    // A custom data loader gets its own in-memory cache so it never sees resources loaded by other loaders and
+    // resolves candidate XSLTs sequentially unless a deadline is set
     public EFormResourceLoader(FileCacheDataLoader dataLoader) {
+        this(dataLoader, null);
+    }
+
+    public EFormResourceLoader(FileCacheDataLoader dataLoader, EFormResourceBundle bundle) {
         this.dataLoader = dataLoader;
+        this.cache = newCache();
+        this.bundle = bundle;
+    }
+
+    /**
+     * Serves resources of all default loaders from the bundle first, before the file cache and the network. Null
+     * turns the bundle off again.
+     */
+    public static void setOfflineBundle(EFormResourceBundle bundle) {
+        sharedBundle = bundle;
+        SHARED_CACHE.clear();
+    }
+
+    private EFormResourceBundle getBundle() {
+        return cache == SHARED_CACHE ? sharedBundle : bundle;
+    }
+
+    /**
+     * Sets how long candidate XSLTs of one form may take to be downloaded and inspected concurrently, null resolves
+     * them one after another without a limit.
+     */
+    public void setParallelResolutionDeadline(Duration parallelResolutionDeadline) {
+        this.parallelResolutionDeadline = parallelResolutionDeadline;
+    }
+
+    private static EFormResourceCache newCache() {
+        return new EFormResourceCache(1024, 64L * 1024 * 1024, CACHE_EXPIRATION_TIME);
     }
 
     public byte[] getResource(String url) throws ServiceUnavailableException {
+        var resource = cache.get(url, this::loadResource);
+        return resource == null ? null : resource.getContent();
+    }
+
+    /**
+     * Digest of a resource returned by getResource, computed once per canonicalization method while the resource
+     * stays cached.
+     */
+    public String getResourceDigest(String url, byte[] content, String canonicalizationMethod,
+                                    boolean allowRelaxedStylesheetParsing) throws XMLValidationException {
+        var resource = cache.get(url, this::loadResource);
+        if (resource == null || resource.getContent() != content)
+            return computeDigest(content, canonicalizationMethod, DigestAlgorithm.SHA256, EFormUtils.ENCODING,
+                    allowRelaxedStylesheetParsing);
+
+        return getArtefact(url, resource, EFormResourceCache.digestKey(canonicalizationMethod,
+                allowRelaxedStylesheetParsing), () -> computeDigest(content, canonicalizationMethod,
+                DigestAlgorithm.SHA256, EFormUtils.ENCODING, allowRelaxedStylesheetParsing));
+    }
+
+    // Artefacts precomputed in the bundle belong to the bundled content, which is always the one that gets cached
+    private String getArtefact(String url, EFormResourceCache.Resource resource, String key, Supplier<String> artefact) {
+        return resource.getArtefact(key, () -> {
+            var offlineBundle = getBundle();
+            var precomputed = offlineBundle == null ? null : offlineBundle.getArtefact(url, key);
+
+            return precomputed != null ? precomputed : artefact.get();
+        });
+    }
+
+    /**
+     * XSLT entries of the form manifest. The manifest is parsed once while it stays cached, destination types taken
+     * from the XSLTs are resolved on every call, so an XSLT that was unavailable is tried again. Returns null when
+     * there is no manifest.
+     */
+    public ArrayList<ManifestXsltEntry> getManifestXsltEntries(String sourceUrl, String formUrl) {
+        var resource = cache.get(sourceUrl + formUrl + "/META-INF/manifest.xml", this::loadResource);
+        if (resource == null)
+            return null;
+
+        var entries = resource.getManifestXsltEntries(() -> {
+            var manifest = getXmlFromDocument(new InMemoryDocument(resource.getContent(), "manifest.xml"));
+            return parseManifestXsltEntries(manifest.getElementsByTagNameNS("urn:manifest:1.0", "file-entry"));
+        });
+
+        return resolveDestinationTypes(entries, sourceUrl, formUrl);
+    }
+
+    private byte[] loadResource(String url) throws ServiceUnavailableException {
+        var offlineBundle = getBundle();
+        if (offlineBundle != null) {
+            var content = offlineBundle.getResource(url);
+            if (content != null)
+                return content;
+        }
+
         DSSDocument document;
         try {
             document = dataLoader.getDocument(url);
@@ -68,6 +183,11 @@ public class EFormResourceLoader {
     }
 
     public ArrayList<ManifestXsltEntry> getManifestXsltEntries(NodeList nodes, String sourceUrl, String formUrl) {
+        return resolveDestinationTypes(parseManifestXsltEntries(nodes), sourceUrl, formUrl);
+    }
+
+    // Entries as declared by the manifest, without a destination type when the manifest does not declare it
+    private static List<ManifestXsltEntry> parseManifestXsltEntries(NodeList nodes) {
         var entries = new ArrayList<ManifestXsltEntry>();
 
         for (int i = 0; i < nodes.getLength(); i++) {
@@ -112,19 +232,6 @@ public class EFormResourceLoader {
                     default -> null;
                 };
 
-            if (mediaDestinationTypeDescription == null) {
-                var xslt = getResource(sourceUrl + formUrl + "/" + fullPath);
-                if (xslt == null)
-                    continue;
-
-                try {
-                    mediaDestinationTypeDescription = EFormUtils.extractTransformationOutputMimeTypeString(
-                            new String(xslt, EFormUtils.ENCODING), true);
-                } catch (TransformationParsingErrorException e) {
-                    continue;
-                }
-            }
-
             entries.add(new ManifestXsltEntry(
                     mediaType,
                     nullOrNodeValue(node.getAttributes().getNamedItem("media-language")),
@@ -137,6 +244,90 @@ public class EFormResourceLoader {
         return entries;
     }
 
+    // Entries without a declared destination type get it from the output method of their XSLT
+    private ArrayList<ManifestXsltEntry> resolveDestinationTypes(List<ManifestXsltEntry> entries, String sourceUrl,
+                                                                String formUrl) {
+        var sourcePrefix = sourceUrl + formUrl + "/";
+        var outputMethods = resolveConcurrently(entries.stream()
+                .filter(entry -> entry.destinationType() == null)
+                .map(entry -> sourcePrefix + entry.fullPath())
+                .toList(), this::getResourceOutputMethod);
+
+        var resolved = new ArrayList<ManifestXsltEntry>();
+        for (var entry : entries) {
+            if (entry.destinationType() != null) {
+                resolved.add(entry);
+                continue;
+            }
+
+            var url = sourcePrefix + entry.fullPath();
+            String destinationType;
+            try {
+                destinationType = outputMethods.containsKey(url) ? outputMethods.get(url) : getResourceOutputMethod(url);
+            } catch (TransformationParsingErrorException e) {
+                continue;
+            }
+
+            if (destinationType == null)
+                continue;
+
+            resolved.add(new ManifestXsltEntry(entry.mediaType(), entry.language(), destinationType, entry.target(),
+                    entry.fullPath(), entry.mediaDesination()));
+        }
+
+        return resolved;
+    }
+
+    // Returns null when the XSLT is not available
+    private String getResourceOutputMethod(String url) throws TransformationParsingErrorException {
+        var resource = cache.get(url, this::loadResource);
+        if (resource == null)
+            return null;
+
+        return getArtefact(url, resource, EFormResourceCache.OUTPUT_METHOD, () ->
+                EFormUtils.extractTransformationOutputMimeTypeString(new String(resource.getContent(),
+                        EFormUtils.ENCODING), true));
+    }
+
+    /**
+     * Runs the resolver for all urls at once on virtual threads and returns the results of those that finished in
+     * time. Urls that failed or did not finish before the deadline are missing from the result, the caller resolves
+     * them again one by one and only fails when that fails too.
+     */
+    private <T> Map<String, T> resolveConcurrently(List<String> urls, Function<String, T> resolver) {
+        var results = new HashMap<String, T>();
+        if (parallelResolutionDeadline == null || urls.size() < 2)
+            return results;
+
+        var executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            var tasks = new LinkedHashMap<String, Future<T>>();
+            for (var url : urls)
+                tasks.computeIfAbsent(url, key -> executor.submit(() -> resolver.apply(key)));
+
+            var deadline = System.nanoTime() + parallelResolutionDeadline.toNanos();
+            for (var task : tasks.entrySet()) {
+                try {
+                    results.put(task.getKey(), task.getValue().get(Math.max(0, deadline - System.nanoTime()),
+                            TimeUnit.NANOSECONDS));
+                } catch (ExecutionException e) {
+                    // reported by the caller
+                } catch (TimeoutException e) {
+                    LOGGER.debug("Resolving {} did not finish in {}, resolving it sequentially", task.getKey(),
+                            parallelResolutionDeadline);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return results;
+                }
+            }
+
+            return results;
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     public ManifestXsltEntry selectXslt(ArrayList<ManifestXsltEntry> entries, String xsltDestinationType,
                                         String xsltLanguage, String xsltTarget, String xsltDigest,
                                         String canonicalizationMethod, String sourcePrefix) {
@@ -149,20 +340,22 @@ public class EFormResourceLoader {
         if (xsltTarget != null)
             entries.removeIf(entry -> !xsltTarget.equals(entry.target()));
 
-        if (xsltDigest != null)
+        if (xsltDigest != null) {
+            var digests = resolveConcurrently(entries.stream().map(entry -> sourcePrefix + entry.fullPath()).toList(),
+                    url -> getCandidateDigest(url, canonicalizationMethod));
+
             entries.removeIf(entry -> {
                 try {
-                    var xslt = getResource(sourcePrefix + entry.fullPath());
-                    if (xslt == null)
-                        return false;
+                    var xsltUrl = sourcePrefix + entry.fullPath();
+                    var candidateDigest = digests.containsKey(xsltUrl) ? digests.get(xsltUrl)
+                            : getCandidateDigest(xsltUrl, canonicalizationMethod);
 
-                    var candidateDigest = computeDigest(xslt, canonicalizationMethod, DigestAlgorithm.SHA256,
-                            EFormUtils.ENCODING, true);
-                    return !candidateDigest.equals(xsltDigest);
+                    return candidateDigest != null && !candidateDigest.equals(xsltDigest);
                 } catch (XMLValidationException e) {
                     return true;
                 }
             });
+        }
 
         entries = filterIfExist(entries, entry -> entry.mediaDesination().equals("sign"));
         entries = filterIfExist(entries, entry -> List.of("HTML", "XHTML").contains(entry.destinationType()));
@@ -174,6 +367,15 @@ public class EFormResourceLoader {
         return entries.stream().findFirst().orElse(null);
     }
 
+    // Returns null when the XSLT is not available
+    private String getCandidateDigest(String url, String canonicalizationMethod) throws XMLValidationException {
+        var xslt = getResource(url);
+        if (xslt == null)
+            return null;
+
+        return getResourceDigest(url, xslt, canonicalizationMethod, true);
+    }
+
     private static String nullOrNodeValue(Node node) {
         return nullOrNodeValue(node, null);
     }
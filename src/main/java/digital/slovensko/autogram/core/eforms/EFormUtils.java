@@ -9,6 +9,7 @@ import java.io.StringWriter;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Properties;
 import java.util.regex.Pattern;
@@ -28,6 +29,8 @@ import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 import digital.slovensko.autogram.core.eforms.dto.XsltParams;
+import digital.slovensko.autogram.core.util.LruCache;
+import digital.slovensko.autogram.core.util.TemplatesCache;
 import digital.slovensko.autogram.core.util.XMLUtils;
 import eu.europa.esig.dss.enumerations.DigestAlgorithm;
 import eu.europa.esig.dss.model.DSSDocument;
@@ -43,6 +46,7 @@ public abstract class EFormUtils {
         "http://www.justice.gov.sk/",
         "https://www.justice.gov.sk/"
     );
+    private static final LruCache<String, String> DIGESTS = new LruCache<>(4096);
 
     public static String extractTransformationOutputMimeTypeString(String transformation)
             throws TransformationParsingErrorException {
@@ -95,8 +99,27 @@ public abstract class EFormUtils {
         return computeDigest(data, canonicalizationMethod, digestAlgorithm, encoding, false);
     }
 
+    // The same schemas and stylesheets are digested when loading, building and validating a container, the result is
+    // remembered by the SHA-256 of the content together with all parameters of the digest
     public static String computeDigest(byte[] data, String canonicalizationMethod, DigestAlgorithm digestAlgorithm,
                                        Charset encoding, boolean allowRelaxedStylesheetParsing) throws XMLValidationException {
+        var key = HexFormat.of().formatHex(DSSUtils.digest(DigestAlgorithm.SHA256, data)) + "|" + canonicalizationMethod
+                + "|" + digestAlgorithm + "|" + allowRelaxedStylesheetParsing + "|" + encoding.name();
+
+        return DIGESTS.computeIfAbsent(key, k -> canonicalizeAndDigest(data, canonicalizationMethod, digestAlgorithm,
+                encoding, allowRelaxedStylesheetParsing));
+    }
+
+    static long getDigestCacheHits() {
+        return DIGESTS.getHits();
+    }
+
+    static long getDigestCacheMisses() {
+        return DIGESTS.getMisses();
+    }
+
+    private static String canonicalizeAndDigest(byte[] data, String canonicalizationMethod, DigestAlgorithm digestAlgorithm,
+                                                Charset encoding, boolean allowRelaxedStylesheetParsing) throws XMLValidationException {
         try {
             var canonicalizer = XMLCanonicalizer.createInstance(canonicalizationMethod);
             var canonicalizedData = canonicalizer.canonicalize(parseStylesheetDocument(data, encoding, allowRelaxedStylesheetParsing));
@@ -305,9 +328,12 @@ public abstract class EFormUtils {
             if (!transformation.isEmpty() && transformation.charAt(0) == '\uFEFF')
                 transformation = transformation.substring(1);
 
-            var transformerFactory = XMLUtils.getSecureTransformerFactory();
-            var stylesheet = parseStylesheetDocument(transformation, allowRelaxedStylesheetParsing);
-            var transformer = transformerFactory.newTransformer(new DOMSource(stylesheet));
+            var stylesheetSource = transformation;
+            var templates = TemplatesCache.getInstance().getTemplates(stylesheetSource, allowRelaxedStylesheetParsing, () -> {
+                var stylesheet = parseStylesheetDocument(stylesheetSource, allowRelaxedStylesheetParsing);
+                return XMLUtils.getSecureTransformerFactory().newTemplates(new DOMSource(stylesheet));
+            });
+            var transformer = templates.newTransformer();
 
             var outputProperties = new Properties();
             outputProperties.setProperty(OutputKeys.ENCODING, ENCODING.displayName());
@@ -2,19 +2,16 @@ package digital.slovensko.autogram.core.eforms;
 
 import digital.slovensko.autogram.core.eforms.dto.EFormAttributes;
 import digital.slovensko.autogram.core.errors.*;
-import eu.europa.esig.dss.enumerations.DigestAlgorithm;
 import eu.europa.esig.dss.model.InMemoryDocument;
-import org.apache.xml.security.utils.DOMNamespaceContext;
-import org.w3c.dom.Document;
 
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static digital.slovensko.autogram.core.eforms.EFormUtils.*;
 
 public class FsEFormResources extends EFormResources {
     private static final String SOURCE_URL = "https://forms-slovensko-digital.s3.eu-central-1.amazonaws.com/fs/";
+    private static final EFormResourceLoader CATALOGUE_LOADER = new EFormResourceLoader();
+    private static final AtomicReference<FsFormCatalogue> CATALOGUE = new AtomicReference<>();
     private String xdcIdentifier;
 
     private FsEFormResources(String formUrl, String canonicalizationMethod, String xsdDigest, String xsltDigest) {
@@ -32,66 +29,34 @@ public class FsEFormResources extends EFormResources {
     }
 
     private static String getFormUrlFromFsFormId(String fsFormId) {
-        var forms_xml = new EFormResourceLoader().getResource(SOURCE_URL + "forms.xml");
-        if (forms_xml == null)
-            throw new XMLValidationException("Zlyhala príprava elektronického formulára", "Nepodarilo sa nájsť zoznam FS formulárov");
-
-        var parsed_meta_xml = getXmlFromDocument(new InMemoryDocument(forms_xml, "forms.xml"));
-        try {
-            var xpath = XPathFactory.newInstance().newXPath();
-            var nsContext = new DOMNamespaceContext(parsed_meta_xml);
-            xpath.setNamespaceContext(nsContext);
-            var ns = nsContext.getPrefix("urn:meta.slovensko.digital:1.0");
-
-            var r = getSlugAndVersion(xpath, parsed_meta_xml, "//" + ns + ":form[@sdIdentifier=\"" + fsFormId + "\"]");
-            if (r != null)
-                return r;
+        var r = getCatalogue().getFormUrlFromFsFormId(fsFormId);
+        if (r == null)
+            throw new UnknownEformException();
 
-        } catch (XPathExpressionException e) {
-            throw new UnrecognizedException(e);
-        }
+        return r;
+    }
 
-        throw new UnknownEformException();
+    private static String getFormUrlFromXdcIdentifier(String xdcIdentifier) {
+        var r = getCatalogue().getFormUrlFromXdcIdentifier(xdcIdentifier);
+        if (r == null)
+            throw new UnknownEformException();
 
+        return r;
     }
 
-    private static String getFormUrlFromXdcIdentifier(String xdcIdentifier) {
-        var forms_xml = new EFormResourceLoader().getResource(SOURCE_URL + "forms.xml");
+    private static FsFormCatalogue getCatalogue() {
+        var forms_xml = CATALOGUE_LOADER.getResource(SOURCE_URL + "forms.xml");
         if (forms_xml == null)
             throw new XMLValidationException("Zlyhala príprava elektronického formulára", "Nepodarilo sa nájsť zoznam FS formulárov");
 
-        var parsed_meta_xml = getXmlFromDocument(new InMemoryDocument(forms_xml, "forms.xml"));
-        try {
-            var xpath = XPathFactory.newInstance().newXPath();
-            var nsContext = new DOMNamespaceContext(parsed_meta_xml);
-            xpath.setNamespaceContext(nsContext);
-            var ns = nsContext.getPrefix("urn:meta.slovensko.digital:1.0");
+        var catalogue = CATALOGUE.get();
+        if (catalogue != null && catalogue.isBuiltFrom(forms_xml))
+            return catalogue;
 
-            var r = getSlugAndVersion(xpath, parsed_meta_xml, "//" + ns + ":form[@xdcIdentifier=\"" + xdcIdentifier + "\"]");
-            if (r != null)
-                return r;
+        catalogue = FsFormCatalogue.parse(forms_xml);
+        CATALOGUE.set(catalogue);
 
-            r = getSlugAndVersion(xpath, parsed_meta_xml, "//" + ns + ":form[@xdcIdentifier=\"" + xdcIdentifier + "/1.0\"]");
-            if (r != null)
-                return r;
-
-            r = getSlugAndVersion(xpath, parsed_meta_xml, "//" + ns + ":form[@xdcIdentifier=\"" + xdcIdentifier.replace("/1.0", "") + "\"]");
-            if (r != null)
-                return r;
-
-        } catch (XPathExpressionException e) {
-            throw new UnrecognizedException(e);
-        }
-
-        throw new UnknownEformException();
-    }
-
-    private static String getSlugAndVersion(XPath xpath, Document parsed_xml, String query) throws XPathExpressionException {
-        var n = xpath.compile(query + "/@slug").evaluate(parsed_xml);
-        if (!n.isEmpty() && !n.equals("NaN"))
-            return n + "/" + xpath.compile(query + "/@version").evaluate(parsed_xml);
-
-        return null;
+        return catalogue;
     }
 
     @Override
@@ -125,11 +90,8 @@ public class FsEFormResources extends EFormResources {
             throw new EFormException("Zlyhala príprava elektronického formulára", "Nepodarilo sa nájsť manifest elektronického formulára");
         }
 
-        var parsed_manifest_xml = getXmlFromDocument(new InMemoryDocument(manifest_xml, "manifest.xml"));
-
-        var nodes = parsed_manifest_xml.getElementsByTagNameNS("urn:manifest:1.0", "file-entry");
-        var entries = resourceLoader.getManifestXsltEntries(nodes, SOURCE_URL, url);
-        if (entries.isEmpty())
+        var entries = resourceLoader.getManifestXsltEntries(SOURCE_URL, url);
+        if (entries == null || entries.isEmpty())
             return false;
 
         var entry = resourceLoader.selectXslt(entries, xsltDestinationType, xsltLanguage, xsltTarget,
@@ -137,11 +99,12 @@ public class FsEFormResources extends EFormResources {
         if (entry == null)
             return false;
 
-        var xsltString = resourceLoader.getResource(SOURCE_URL + url + "/" + entry.fullPath());
+        var xsltUrl = SOURCE_URL + url + "/" + entry.fullPath();
+        var xsltString = resourceLoader.getResource(xsltUrl);
         if (xsltString == null)
             return false;
 
-        var xsltDigest = computeDigest(xsltString, canonicalizationMethod, DigestAlgorithm.SHA256, ENCODING, true);
+        var xsltDigest = resourceLoader.getResourceDigest(xsltUrl, xsltString, canonicalizationMethod, true);
         if (this.xsltDigest != null && !xsltDigest.equals(this.xsltDigest))
             throw new XMLValidationException("Zlyhala validácia XML Datacontainera", "Automaticky nájdená XSLT transformácia sa nezhoduje s odtlačkom v XML Datacontaineri");
 
@@ -154,11 +117,12 @@ public class FsEFormResources extends EFormResources {
         this.xsltMediaType = entry.mediaType();
         this.xsltTarget = entry.target();
 
-        var xsdString = resourceLoader.getResource(SOURCE_URL + url + "/schema.xsd");
+        var xsdUrl = SOURCE_URL + url + "/schema.xsd";
+        var xsdString = resourceLoader.getResource(xsdUrl);
         if (xsdString == null)
             return false;
 
-        var xsdDigest = computeDigest(xsdString, canonicalizationMethod, DigestAlgorithm.SHA256, ENCODING);
+        var xsdDigest = resourceLoader.getResourceDigest(xsdUrl, xsdString, canonicalizationMethod, false);
         if (this.xsdDigest != null && !xsdDigest.equals(this.xsdDigest))
             throw new XMLValidationException("Zlyhala validácia XML Datacontainera", "Automaticky nájdená XSD schéma sa nezhoduje s odtlačkom v XML Datacontaineri");
 
@@ -0,0 +1,82 @@
+package digital.slovensko.autogram.core.eforms;
+
+import digital.slovensko.autogram.core.errors.XMLValidationException;
+import eu.europa.esig.dss.model.InMemoryDocument;
+import org.w3c.dom.Element;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static digital.slovensko.autogram.core.eforms.EFormUtils.getXmlFromDocument;
+
+/**
+ * Index of the financial administration forms.xml mapping form identifiers to "slug/version" form urls. When an
+ * identifier is listed more than once, the first form in document order that has a slug attribute wins, the same as
+ * in an XPath lookup of the slug attribute.
+ */
+class FsFormCatalogue {
+    private static final String META_XMLNS = "urn:meta.slovensko.digital:1.0";
+
+    private final byte[] source;
+    private final Map<String, String> formUrlsByFsFormId;
+    private final Map<String, String> formUrlsByXdcIdentifier;
+
+    private FsFormCatalogue(byte[] source, Map<String, String> formUrlsByFsFormId,
+                            Map<String, String> formUrlsByXdcIdentifier) {
+        this.source = source;
+        this.formUrlsByFsFormId = formUrlsByFsFormId;
+        this.formUrlsByXdcIdentifier = formUrlsByXdcIdentifier;
+    }
+
+    static FsFormCatalogue parse(byte[] formsXml) throws XMLValidationException {
+        var formUrlsByFsFormId = new HashMap<String, String>();
+        var formUrlsByXdcIdentifier = new HashMap<String, String>();
+
+        var forms = getXmlFromDocument(new InMemoryDocument(formsXml, "forms.xml"))
+                .getElementsByTagNameNS(META_XMLNS, "form");
+        for (int i = 0; i < forms.getLength(); i++) {
+            var form = (Element) forms.item(i);
+            if (!form.hasAttribute("slug"))
+                continue;
+
+            // An empty slug still shadows later forms with the same identifier, there is no url for it
+            var formUrl = getSlugAndVersion(form);
+            if (form.hasAttribute("sdIdentifier") && !formUrlsByFsFormId.containsKey(form.getAttribute("sdIdentifier")))
+                formUrlsByFsFormId.put(form.getAttribute("sdIdentifier"), formUrl);
+
+            if (form.hasAttribute("xdcIdentifier") && !formUrlsByXdcIdentifier.containsKey(form.getAttribute("xdcIdentifier")))
+                formUrlsByXdcIdentifier.put(form.getAttribute("xdcIdentifier"), formUrl);
+        }
+
+        return new FsFormCatalogue(formsXml, formUrlsByFsFormId, formUrlsByXdcIdentifier);
+    }
+
+    private static String getSlugAndVersion(Element form) {
+        var slug = form.getAttribute("slug");
+        if (slug.isEmpty() || slug.equals("NaN"))
+            return null;
+
+        return slug + "/" + form.getAttribute("version");
+    }
+
+    // Catalogues are rebuilt only when the resource loader returns new content
+    boolean isBuiltFrom(byte[] formsXml) {
+        return source == formsXml;
+    }
+
+    String getFormUrlFromFsFormId(String fsFormId) {
+        return formUrlsByFsFormId.get(fsFormId);
+    }
+
+    String getFormUrlFromXdcIdentifier(String xdcIdentifier) {
+        var formUrl = formUrlsByXdcIdentifier.get(xdcIdentifier);
+        if (formUrl != null)
+            return formUrl;
+
+        formUrl = formUrlsByXdcIdentifier.get(xdcIdentifier + "/1.0");
+        if (formUrl != null)
+            return formUrl;
+
+        return formUrlsByXdcIdentifier.get(xdcIdentifier.replace("/1.0", ""));
+    }
+}
@@ -3,10 +3,6 @@ package digital.slovensko.autogram.core.eforms;
 import digital.slovensko.autogram.core.eforms.dto.XsltParams;
 import digital.slovensko.autogram.core.errors.ServiceUnavailableException;
 import digital.slovensko.autogram.core.errors.XMLValidationException;
-import eu.europa.esig.dss.enumerations.DigestAlgorithm;
-import eu.europa.esig.dss.model.InMemoryDocument;
-
-import static digital.slovensko.autogram.core.eforms.EFormUtils.*;
 
 public class UpvsEFormResources extends EFormResources {
     private static final String SOURCE_URL = "https://data.gov.sk/doc/egov/eform/";
@@ -35,11 +31,8 @@ public class UpvsEFormResources extends EFormResources {
         if (manifest_xml == null)
             throw new XMLValidationException("Zlyhala príprava elektronického formulára", "Nepodarilo sa nájsť manifest elektronického formulára");
 
-        var parsed_manifest_xml = getXmlFromDocument(new InMemoryDocument(manifest_xml, "manifest.xml"));
-        var nodes = parsed_manifest_xml.getElementsByTagNameNS("urn:manifest:1.0", "file-entry");
-
-        var entries = resourceLoader.getManifestXsltEntries(nodes, SOURCE_URL, url);
-        if (entries.isEmpty())
+        var entries = resourceLoader.getManifestXsltEntries(SOURCE_URL, url);
+        if (entries == null || entries.isEmpty())
             return false;
 
         var entry = resourceLoader.selectXslt(entries, xsltDestinationType, xsltLanguage, xsltTarget,
@@ -47,11 +40,12 @@ public class UpvsEFormResources extends EFormResources {
         if (entry == null)
             return false;
 
-        var xsltString = getRemoteResource(SOURCE_URL + url + "/" + entry.fullPath());
+        var xsltUrl = SOURCE_URL + url + "/" + entry.fullPath();
+        var xsltString = getRemoteResource(xsltUrl);
         if (xsltString == null)
             return false;
 
-        var xsltDigest = computeDigest(xsltString, canonicalizationMethod, DigestAlgorithm.SHA256, ENCODING, true);
+        var xsltDigest = resourceLoader.getResourceDigest(xsltUrl, xsltString, canonicalizationMethod, true);
         if (this.xsltDigest != null && !xsltDigest.equals(this.xsltDigest))
             throw new XMLValidationException("Zlyhala validácia XML Datacontainera", "Automaticky nájdená XSLT transformácia sa nezhoduje s odtlačkom v XML Datacontaineri");
 
@@ -63,11 +57,12 @@ public class UpvsEFormResources extends EFormResources {
         if (this.xsltIdentifier == null)
             this.xsltIdentifier = "http://schemas.gov.sk/form/" + url + "/form.xslt";
 
-        var xsdString = getRemoteResource(SOURCE_URL + url + "/schema.xsd");
+        var xsdUrl = SOURCE_URL + url + "/schema.xsd";
+        var xsdString = getRemoteResource(xsdUrl);
         if (xsdString == null)
             return false;
 
-        var xsdDigest = computeDigest(xsdString, canonicalizationMethod, DigestAlgorithm.SHA256, ENCODING);
+        var xsdDigest = resourceLoader.getResourceDigest(xsdUrl, xsdString, canonicalizationMethod, false);
         if (this.xsdDigest != null && !xsdDigest.equals(this.xsdDigest))
             throw new XMLValidationException("Zlyhala validácia XML Datacontainera", "Automaticky nájdená XSD schéma sa nezhoduje s odtlačkom v XML Datacontaineri");
 
@@ -20,19 +20,31 @@ import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.TreeMap;
 
 public abstract class XDCBuilder {
     private static final Charset ENCODING = StandardCharsets.UTF_8;
 
     public static DSSDocument transform(SigningParameters params, String filename, Document document) {
+        return transform(params, filename, document, false);
+    }
+
+    /**
+     * With useStreamingWriter the container is written by XDCStreamWriter instead of a DOM and an identity
+     * transformation, producing the same bytes. SigningJob uses it when enabled by setStreamingXdcWriterEnabled.
+     */
+    public static DSSDocument transform(SigningParameters params, String filename, Document document,
+            boolean useStreamingWriter) {
         var identifier = params.getIdentifier();
         var lastSlashIndex = identifier.lastIndexOf("/");
         if (lastSlashIndex == -1)
@@ -43,6 +55,10 @@ public abstract class XDCBuilder {
             identifierVersion = "1.0";
 
         try {
+            if (useStreamingWriter)
+                return new InMemoryDocument(writeStreaming(params, document, identifier, identifierVersion),
+                        getXdcfFilename(filename), AutogramMimeType.XML_DATACONTAINER_WITH_CHARSET);
+
             var parsedDocument = getSecureDocumentBuilder().newDocument();
             var importedNode = parsedDocument.importNode(document.getDocumentElement(), true);
             parsedDocument.appendChild(importedNode);
@@ -66,6 +82,99 @@ public abstract class XDCBuilder {
         }
     }
 
+    private static byte[] writeStreaming(SigningParameters params, Document document, String identifier,
+            String identifierVersion) throws IOException, XMLStreamException {
+        var output = new ByteArrayOutputStream();
+        var writer = new XDCStreamWriter(output);
+        writer.startDocument();
+
+        var containerAttributes = new TreeMap<String, String>();
+        if (params.getContainerXmlns() != null)
+            containerAttributes.put("xmlns:xdc", params.getContainerXmlns());
+        writer.startElement("xdc:XMLDataContainer", containerAttributes);
+
+        var xmlDataAttributes = new TreeMap<String, String>();
+        xmlDataAttributes.put("ContentType", "application/xml; charset=UTF-8");
+        xmlDataAttributes.put("Identifier", identifier);
+        if (!params.shouldEmbedSchemas())
+            xmlDataAttributes.put("Version", identifierVersion);
+        writer.startElement("xdc:XMLData", xmlDataAttributes);
+        writer.copy(document.getDocumentElement());
+        writer.endElement();
+
+        if (params.shouldEmbedSchemas())
+            writeUsedSchemasEmbedded(writer, params.getSchema(), params.getTransformation(), params.getXsltParams());
+        else
+            writeUsedSchemasReferenced(writer, params.getSchema(), params.getTransformation(),
+                    params.getPropertiesCanonicalization(), params.getDigestAlgorithm(), params.getXsdIdentifier(),
+                    params.getXsltParams());
+
+        writer.endElement();
+        writer.endDocument();
+
+        return output.toByteArray();
+    }
+
+    private static void writeUsedSchemasReferenced(XDCStreamWriter writer, String xsdSchema, String xsltSchema,
+            String canonicalizationMethod, DigestAlgorithm digestAlgorithm, String xsdIdentifier,
+            XsltParams xsltParams) throws IOException {
+        writer.startElement("xdc:UsedSchemasReferenced", new TreeMap<>());
+
+        if (xsdSchema != null) {
+            var attributes = new TreeMap<String, String>();
+            attributes.put("TransformAlgorithm", canonicalizationMethod);
+            attributes.put("DigestMethod", toNamespacedString(digestAlgorithm));
+            attributes.put("DigestValue",
+                    computeDigest(xsdSchema.getBytes(ENCODING), canonicalizationMethod, digestAlgorithm, ENCODING));
+            writer.startElement("xdc:UsedXSDReference", attributes);
+            writer.text(xsdIdentifier);
+            writer.endElement();
+        }
+
+        if (xsltSchema != null) {
+            var attributes = getPresentationSchemaAttributes(xsltParams);
+            attributes.put("TransformAlgorithm", canonicalizationMethod);
+            attributes.put("DigestMethod", toNamespacedString(digestAlgorithm));
+            attributes.put("DigestValue", computeDigest(xsltSchema.getBytes(ENCODING), canonicalizationMethod,
+                    digestAlgorithm, ENCODING, xsltParams.trustedSource()));
+            writer.startElement("xdc:UsedPresentationSchemaReference", attributes);
+            writer.text(xsltParams.identifier());
+            writer.endElement();
+        }
+
+        writer.endElement();
+    }
+
+    private static void writeUsedSchemasEmbedded(XDCStreamWriter writer, String xsdSchema, String xsltSchema,
+            XsltParams xsltParams) throws IOException, XMLStreamException {
+        writer.startElement("xdc:UsedSchemasEmbedded", new TreeMap<>());
+
+        if (xsdSchema != null) {
+            writer.startElement("xdc:UsedXSDEmbedded", new TreeMap<>());
+            writer.copyFirstNode(xsdSchema);
+            writer.endElement();
+        }
+
+        if (xsltSchema != null) {
+            writer.startElement("xdc:UsedPresentationSchemaEmbedded", getPresentationSchemaAttributes(xsltParams));
+            writer.copyFirstNode(xsltSchema);
+            writer.endElement();
+        }
+
+        writer.endElement();
+    }
+
+    private static TreeMap<String, String> getPresentationSchemaAttributes(XsltParams xsltParams) {
+        var attributes = new TreeMap<String, String>();
+        attributes.put("ContentType", xsltParams.mediaType());
+        attributes.put("MediaDestinationTypeDescription", xsltParams.destinationType());
+        attributes.put("Language", xsltParams.language());
+        if (xsltParams.target() != null)
+            attributes.put("TargetEnvironment", xsltParams.target());
+
+        return attributes;
+    }
+
     private static Document transformDocument(Document document, String containerXmlns, String identifierUri,
             String identifierVersion, Element usedSchemas, boolean shouldEmbedSchemas) {
         var root = document.getDocumentElement();
@@ -0,0 +1,273 @@
+package digital.slovensko.autogram.core.eforms.xdc;
+
+import digital.slovensko.autogram.core.util.XMLUtils;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Writes an XML Datacontainer straight to a stream. The form is copied from its DOM and embedded schemas are copied
+ * from their source as StAX events, nothing is imported into a new document. Escaping, empty elements, attribute
+ * order and dropping of redundant namespace declarations follow the identity transformation used by XDCBuilder.
+ */
+class XDCStreamWriter {
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLUtils.getSecureXMLInputFactory();
+
+    private final Writer out;
+    private final Deque<String> elements = new ArrayDeque<>();
+    private final Deque<Map<String, String>> namespaces = new ArrayDeque<>();
+    private boolean startTagOpen = false;
+
+    XDCStreamWriter(OutputStream stream) {
+        this.out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+        namespaces.push(Map.of(XMLConstants.XML_NS_PREFIX, XMLConstants.XML_NS_URI));
+    }
+
+    void startDocument() throws IOException {
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+    }
+
+    void endDocument() throws IOException {
+        out.flush();
+    }
+
+    // Attributes come sorted by name as in a DOM attribute map
+    void startElement(String name, SortedMap<String, String> attributes) throws IOException {
+        var declarations = new ArrayList<String[]>();
+        var others = new ArrayList<String[]>();
+        for (var attribute : attributes.entrySet())
+            (isNamespaceDeclaration(attribute.getKey()) ? declarations : others)
+                    .add(new String[] { attribute.getKey(), attribute.getValue() });
+
+        startElement(name, declarations, others);
+    }
+
+    void text(String text) throws IOException {
+        if (text == null || text.isEmpty())
+            return;
+
+        closeStartTag();
+        escape(text, false);
+    }
+
+    void endElement() throws IOException {
+        var name = elements.pop();
+        namespaces.pop();
+        if (startTagOpen) {
+            out.write("/>");
+            startTagOpen = false;
+        } else {
+            out.write("</");
+            out.write(name);
+            out.write('>');
+        }
+    }
+
+    void copy(Node node) throws IOException {
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE -> {
+                var declarations = new ArrayList<String[]>();
+                var others = new ArrayList<String[]>();
+                var attributes = node.getAttributes();
+                for (var i = 0; i < attributes.getLength(); i++) {
+                    var attribute = (Attr) attributes.item(i);
+                    (isNamespaceDeclaration(attribute.getName()) ? declarations : others)
+                            .add(new String[] { attribute.getName(), attribute.getValue() });
+                }
+
+                startElement(((Element) node).getTagName(), declarations, others);
+                for (var child = node.getFirstChild(); child != null; child = child.getNextSibling())
+                    copy(child);
+
+                endElement();
+            }
+            case Node.TEXT_NODE, Node.CDATA_SECTION_NODE -> text(node.getNodeValue());
+            case Node.COMMENT_NODE -> comment(node.getNodeValue());
+            case Node.PROCESSING_INSTRUCTION_NODE -> processingInstruction(node.getNodeName(), node.getNodeValue());
+            case Node.ENTITY_REFERENCE_NODE -> {
+                for (var child = node.getFirstChild(); child != null; child = child.getNextSibling())
+                    copy(child);
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Copies the first node of the given document, which is what importing the first child of the parsed document
+     * does. Documents with a DOCTYPE are rejected like by the secure document builder.
+     */
+    void copyFirstNode(String xml) throws IOException, XMLStreamException {
+        var reader = XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(xml));
+        try {
+            var depth = 0;
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.DTD -> throw new XMLStreamException("DOCTYPE is not allowed");
+                    case XMLStreamConstants.START_ELEMENT -> {
+                        depth++;
+                        startElement(reader);
+                    }
+                    case XMLStreamConstants.END_ELEMENT -> {
+                        endElement();
+                        if (--depth == 0)
+                            return;
+                    }
+                    case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE -> {
+                        if (depth > 0)
+                            text(reader.getText());
+                    }
+                    case XMLStreamConstants.COMMENT -> {
+                        comment(reader.getText());
+                        if (depth == 0)
+                            return;
+                    }
+                    case XMLStreamConstants.PROCESSING_INSTRUCTION -> {
+                        processingInstruction(reader.getPITarget(), reader.getPIData());
+                        if (depth == 0)
+                            return;
+                    }
+                    default -> {
+                    }
+                }
+            }
+
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void startElement(XMLStreamReader reader) throws IOException {
+        var declarations = new ArrayList<String[]>();
+        for (var i = 0; i < reader.getNamespaceCount(); i++) {
+            var prefix = reader.getNamespacePrefix(i);
+            var uri = reader.getNamespaceURI(i);
+            declarations.add(new String[] {
+                    prefix == null || prefix.isEmpty() ? "xmlns" : "xmlns:" + prefix, uri == null ? "" : uri });
+        }
+
+        var others = new ArrayList<String[]>();
+        for (var i = 0; i < reader.getAttributeCount(); i++)
+            others.add(new String[] { qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)),
+                    reader.getAttributeValue(i) });
+
+        declarations.sort((a, b) -> a[0].compareTo(b[0]));
+        others.sort((a, b) -> a[0].compareTo(b[0]));
+        startElement(qualifiedName(reader.getPrefix(), reader.getLocalName()), declarations, others);
+    }
+
+    private void startElement(String name, List<String[]> declarations, List<String[]> attributes)
+            throws IOException {
+        closeStartTag();
+        out.write('<');
+        out.write(name);
+
+        var scope = new HashMap<String, String>();
+        for (var declaration : declarations) {
+            var prefix = declaration[0].equals("xmlns") ? "" : declaration[0].substring("xmlns:".length());
+            if (declaration[1].equals(lookupNamespace(prefix)))
+                continue;
+
+            scope.put(prefix, declaration[1]);
+            writeAttribute(declaration[0], declaration[1]);
+        }
+
+        for (var attribute : attributes)
+            writeAttribute(attribute[0], attribute[1]);
+
+        elements.push(name);
+        namespaces.push(scope);
+        startTagOpen = true;
+    }
+
+    private void comment(String text) throws IOException {
+        closeStartTag();
+        out.write("<!--");
+        out.write(text);
+        out.write("-->");
+    }
+
+    private void processingInstruction(String target, String data) throws IOException {
+        closeStartTag();
+        out.write("<?");
+        out.write(target);
+        if (data != null && !data.isEmpty()) {
+            out.write(' ');
+            out.write(data);
+        }
+        out.write("?>");
+    }
+
+    private void writeAttribute(String name, String value) throws IOException {
+        out.write(' ');
+        out.write(name);
+        out.write("=\"");
+        escape(value == null ? "" : value, true);
+        out.write('"');
+    }
+
+    private void closeStartTag() throws IOException {
+        if (!startTagOpen)
+            return;
+
+        out.write('>');
+        startTagOpen = false;
+    }
+
+    private String lookupNamespace(String prefix) {
+        for (var scope : namespaces)
+            if (scope.containsKey(prefix))
+                return scope.get(prefix);
+
+        return prefix.isEmpty() ? "" : null;
+    }
+
+    private void escape(String text, boolean inAttribute) throws IOException {
+        for (var i = 0; i < text.length(); i++) {
+            var c = text.charAt(i);
+            switch (c) {
+                case '<' -> out.write("&lt;");
+                case '>' -> out.write("&gt;");
+                case '&' -> out.write("&amp;");
+                case '\r' -> out.write("&#xD;");
+                case '"' -> out.write(inAttribute ? "&#34;" : "\"");
+                case '\n' -> out.write(inAttribute ? "&#xA;" : "\n");
+                case '\t' -> out.write(inAttribute ? "&#x9;" : "\t");
+                default -> {
+                    if ((c >= 0x7F && c <= 0x9F) || c == 0x2028)
+                        out.write("&#x" + Integer.toHexString(c).toUpperCase() + ";");
+                    else
+                        out.write(c);
+                }
+            }
+        }
+    }
+
+    private static boolean isNamespaceDeclaration(String name) {
+        return name.equals("xmlns") || name.startsWith("xmlns:");
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+}
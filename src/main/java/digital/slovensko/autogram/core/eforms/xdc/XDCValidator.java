@@ -1,15 +1,24 @@
 package digital.slovensko.autogram.core.eforms.xdc;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.io.StringReader;
 
 import digital.slovensko.autogram.core.eforms.EFormUtils;
+import digital.slovensko.autogram.core.util.LruCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.w3c.dom.Element;
 import org.xml.sax.SAXException;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import java.util.Base64;
 
 import digital.slovensko.autogram.core.AutogramMimeType;
 import digital.slovensko.autogram.core.errors.XMLValidationException;
@@ -21,19 +30,56 @@ import eu.europa.esig.dss.enumerations.DigestAlgorithm;
 import eu.europa.esig.dss.model.DSSDocument;
 
 public abstract class XDCValidator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(XDCValidator.class);
     private static final Charset ENCODING = StandardCharsets.UTF_8;
+    private static final LruCache<String, Schema> SCHEMA_CACHE = new LruCache<>(64);
+    private static final Schema XDC_SCHEMA = compileXdcSchema();
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLUtils.getSecureXMLInputFactory();
+    private static final String XDC_ROOT_ELEMENT = "XMLDataContainer";
+
+    private static Schema compileXdcSchema() {
+        try (var xdcSchema = EFormUtils.class.getResourceAsStream("xmldatacontainer.xsd")) {
+            return compileSchema(new String(xdcSchema.readAllBytes(), ENCODING));
+
+        } catch (IOException | NullPointerException | SAXException e) {
+            LOGGER.error("Failed to compile XML Datacontainer schema", e);
+            return null;
+        }
+    }
 
     public static boolean isXDCContent(DSSDocument document) {
-        try {
-            var is = document.openStream();
-            var docString = new String(is.readAllBytes(), ENCODING);
-            var xdcSchema = EFormUtils.class.getResourceAsStream("xmldatacontainer.xsd");
+        if (XDC_SCHEMA == null)
+            return false;
+
+        if (!hasXdcRootElement(document))
+            return false;
 
-            return validateXmlContentAgainstXsd(docString, new String(xdcSchema.readAllBytes(), ENCODING));
+        // Decoded as UTF-8 like the content used to be, but streamed instead of read into a String first
+        try (var reader = new InputStreamReader(document.openStream(), ENCODING)) {
+            XDC_SCHEMA.newValidator().validate(new StreamSource(reader));
+            return true;
 
-        } catch (IOException | NullPointerException | XMLValidationException e) {
+        } catch (IOException | SAXException | RuntimeException e) {
             return false;
-        } catch (Exception e) {
+        }
+    }
+
+    // Reads only up to the root element, the schema accepts nothing else than XMLDataContainer as root
+    private static boolean hasXdcRootElement(DSSDocument document) {
+        try (var stream = document.openStream()) {
+            var reader = XML_INPUT_FACTORY.createXMLStreamReader(new InputStreamReader(stream, ENCODING));
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT)
+                        return XDC_ROOT_ELEMENT.equals(reader.getLocalName()) && XDC_XMLNS.equals(reader.getNamespaceURI());
+                }
+
+                return false;
+            } finally {
+                reader.close();
+            }
+
+        } catch (IOException | XMLStreamException | RuntimeException e) {
             return false;
         }
     }
@@ -76,7 +122,15 @@ public abstract class XDCValidator {
             return true;
 
         try {
-            var schema = XMLUtils.getSecureSchemaFactory().newSchema(new StreamSource(new StringReader(xsdSchema)));
+            return validateXmlContentAgainstSchema(xmlContent, getCompiledSchema(xsdSchema));
+
+        } catch (SAXException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static boolean validateXmlContentAgainstSchema(String xmlContent, Schema schema) {
+        try {
             var validator = schema.newValidator();
             validator.validate(new StreamSource(new StringReader(xmlContent)));
 
@@ -87,6 +141,23 @@ public abstract class XDCValidator {
         }
     }
 
+    private static Schema getCompiledSchema(String xsdSchema) throws SAXException {
+        var key = Base64.getEncoder().encodeToString(
+                eu.europa.esig.dss.spi.DSSUtils.digest(DigestAlgorithm.SHA256, xsdSchema.getBytes(ENCODING)));
+
+        var schema = SCHEMA_CACHE.get(key);
+        if (schema == null) {
+            schema = compileSchema(xsdSchema);
+            SCHEMA_CACHE.put(key, schema);
+        }
+
+        return schema;
+    }
+
+    private static Schema compileSchema(String xsdSchema) throws SAXException {
+        return XMLUtils.getSecureSchemaFactory().newSchema(new StreamSource(new StringReader(xsdSchema)));
+    }
+
     public static boolean validateXsdDigest(String content, Element document, String canonicalizationMethod,
             DigestAlgorithm digestAlgorithm) throws XMLValidationException {
         return validateDigest(content, document, "UsedXSDReference", canonicalizationMethod, digestAlgorithm);
@@ -1,18 +1,36 @@
 package digital.slovensko.autogram.core.server;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonWriter;
 import com.sun.net.httpserver.HttpExchange;
 import digital.slovensko.autogram.core.errors.AutogramException;
+import digital.slovensko.autogram.core.errors.UnrecognizedException;
 import digital.slovensko.autogram.core.server.dto.ErrorResponse;
 import digital.slovensko.autogram.core.server.errors.EmptyBodyException;
 import digital.slovensko.autogram.core.server.errors.MalformedBodyException;
 import digital.slovensko.autogram.core.server.errors.ResponseNetworkErrorException;
+import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.model.DSSException;
 
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 
 public class EndpointUtils {
     private final static Gson gson = new Gson();
+    // Document content above this size, as sent, is kept in a temporary file instead of the heap
+    private static volatile long streamedContentMemoryThreshold = 4 * 1024 * 1024;
+
+    public static void setStreamedContentMemoryThreshold(long bytes) {
+        streamedContentMemoryThreshold = bytes;
+    }
 
     public static void respondWithError(ErrorResponse error, HttpExchange exchange) {
         try {
@@ -37,6 +55,114 @@ public class EndpointUtils {
         }
     }
 
+    public static void respondWithDocument(DSSDocument document, HttpExchange exchange) {
+        respondWithStreamedDocument(document, exchange, (writer, content) -> {
+            writer.name("filename").value(document.getName());
+            content.run();
+            writer.name("mimeType").value(document.getMimeType().getMimeTypeString() + ";base64");
+        });
+    }
+
+    public static void respondWithSignedDocument(DSSDocument document, String signedBy, String issuedBy, HttpExchange exchange) {
+        respondWithStreamedDocument(document, exchange, (writer, content) -> {
+            content.run();
+            writer.name("mimeType").value(document.getMimeType().getMimeTypeString() + ";base64");
+            writer.name("filename").value(document.getName());
+            writer.name("signedBy").value(signedBy);
+            writer.name("issuedBy").value(issuedBy);
+        });
+    }
+
+    /**
+     * Writes the JSON envelope directly to the response body with chunked transfer. The document is Base64 encoded
+     * from its stream into the "content" member at the position chosen by the envelope.
+     *
+     * <p>The document is opened and its first block read before the 200 status is sent, so a document that can not
+     * be read is reported as an error. Should reading fail later, the envelope is left unterminated and the client
+     * gets invalid JSON instead of a truncated document.</p>
+     */
+    private static void respondWithStreamedDocument(DSSDocument document, HttpExchange exchange, DocumentEnvelope envelope) {
+        InputStream stream;
+        byte[] firstBlock;
+        try {
+            stream = document.openStream();
+            firstBlock = stream.readNBytes(8192);
+        } catch (IOException | DSSException e) {
+            throw new UnrecognizedException(e);
+        }
+
+        try (stream) {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, 0);
+
+            var output = new BufferedOutputStream(exchange.getResponseBody());
+            var writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+            var jsonWriter = new JsonWriter(writer);
+            jsonWriter.setSerializeNulls(false);
+            jsonWriter.setHtmlSafe(true);
+
+            jsonWriter.beginObject();
+            envelope.write(jsonWriter, () -> {
+                // Gson has no streaming string value, the quotes are written around the encoded content by hand
+                jsonWriter.name("content").jsonValue("\"");
+                writer.flush();
+                try (var encoder = Base64.getEncoder().wrap(new ContentOutputStream(output))) {
+                    encoder.write(firstBlock);
+                    stream.transferTo(encoder);
+                }
+                writer.write('"');
+            });
+            jsonWriter.endObject();
+            jsonWriter.close();
+        } catch (IOException e) {
+            throw new ResponseNetworkErrorException("Externá aplikácia nečakala na odpoveď", e);
+        }
+    }
+
+    private interface DocumentEnvelope {
+        void write(JsonWriter writer, ContentWriter content) throws IOException;
+    }
+
+    private interface ContentWriter {
+        void run() throws IOException;
+    }
+
+    // Keeps the response open after the content and escapes Base64 padding like Gson does in HTML safe mode
+    private static class ContentOutputStream extends FilterOutputStream {
+        private static final byte[] ESCAPED_PADDING = "\\u003d".getBytes(StandardCharsets.US_ASCII);
+
+        ContentOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (b == '=')
+                out.write(ESCAPED_PADDING);
+            else
+                out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            var start = off;
+            for (var i = off; i < off + len; i++) {
+                if (b[i] != '=')
+                    continue;
+
+                out.write(b, start, i - start);
+                out.write(ESCAPED_PADDING);
+                start = i + 1;
+            }
+            out.write(b, start, off + len - start);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
     public static <T> T loadFromJsonExchange(HttpExchange exchange, Class<T> classOfT) throws AutogramException {
         String content;
         try {
@@ -60,4 +186,40 @@ public class EndpointUtils {
             throw new MalformedBodyException("Failed to parse JSON body", e);
         }
     }
+
+    /**
+     * Parses the body without reading it whole first. Document content is Base64 decoded on the fly, see
+     * StreamedContent. The returned request has to be closed once the documents are no longer needed.
+     */
+    public static <T> StreamedRequest<T> loadFromStreamingJsonExchange(HttpExchange exchange, Class<T> classOfT) throws AutogramException {
+        var reader = new StreamingJsonReader(exchange.getRequestBody(), streamedContentMemoryThreshold);
+        JsonElement tree;
+        try {
+            tree = reader.read();
+        } catch (IOException e) {
+            throw new MalformedBodyException("Failed to load request body.", "");
+        } catch (JsonSyntaxException e) {
+            throw new MalformedBodyException("Failed to parse JSON body", e);
+        }
+
+        if (tree == null)
+            throw new EmptyBodyException("Empty body");
+
+        try {
+            var ret = gson.fromJson(tree, classOfT);
+
+            if (ret == null)
+                throw new MalformedBodyException("Failed to parse JSON body", "");
+
+            return new StreamedRequest<>(ret, reader.getContents());
+
+        } catch (JsonSyntaxException e) {
+            reader.closeContents();
+            throw new MalformedBodyException("Failed to parse JSON body", e);
+
+        } catch (AutogramException e) {
+            reader.closeContents();
+            throw e;
+        }
+    }
 }
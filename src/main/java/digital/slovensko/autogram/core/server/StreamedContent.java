@@ -0,0 +1,124 @@
+package digital.slovensko.autogram.core.server;
+
+import digital.slovensko.autogram.core.server.errors.MalformedBodyException;
+import eu.europa.esig.dss.enumerations.MimeType;
+import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.model.FileDocument;
+import eu.europa.esig.dss.model.InMemoryDocument;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Document content read while the request body was being parsed, kept as sent (UTF-8 of the JSON string). The parsed
+ * body holds a marker in place of the content, DTOs resolve it back through the StreamedRequest it was parsed with and
+ * decide whether it is Base64. Small content is kept in memory, larger is spilled to an owner-only temporary file
+ * which is deleted when the request is closed, the same holds for its decoded form. Documents over such file read it
+ * through a channel on every openStream, the file is not mapped so that it can be deleted while a stream is still
+ * open, also on Windows.
+ */
+public final class StreamedContent implements AutoCloseable {
+    private static final String MARKER_PREFIX = "streamed-content:";
+
+    private final String marker = MARKER_PREFIX + UUID.randomUUID();
+    private final byte[] bytes;
+    private final File file;
+    private StreamedContent decoded;
+
+    StreamedContent(byte[] bytes, File file) {
+        this.bytes = bytes;
+        this.file = file;
+    }
+
+    String getMarker() {
+        return marker;
+    }
+
+    public boolean isEmpty() {
+        if (file == null)
+            return bytes.length == 0;
+
+        return file.length() == 0;
+    }
+
+    // Base64 decoded content, the only form Document and CompareRequestBody accept
+    public DSSDocument toDocument() throws MalformedBodyException {
+        return toDocument(null, true);
+    }
+
+    public DSSDocument toDocument(String name) throws MalformedBodyException {
+        return toDocument(name, true);
+    }
+
+    public DSSDocument toDocument(String name, boolean base64) throws MalformedBodyException {
+        if (base64)
+            return decoded().toRawDocument(name);
+
+        return toRawDocument(name);
+    }
+
+    private DSSDocument toRawDocument(String name) {
+        if (file == null)
+            return new InMemoryDocument(bytes, name);
+
+        var document = new FileDocument(file);
+        document.setName(name);
+        document.setMimeType(name == null ? null : MimeType.fromFileName(name));
+        return document;
+    }
+
+    private synchronized StreamedContent decoded() throws MalformedBodyException {
+        if (decoded == null)
+            decoded = decodeBase64();
+
+        return decoded;
+    }
+
+    // Decoded content is smaller than the encoded one, it stays in memory exactly when the encoded content did
+    private StreamedContent decodeBase64() throws MalformedBodyException {
+        if (file == null) {
+            try {
+                return new StreamedContent(Base64.getDecoder().decode(bytes), null);
+            } catch (IllegalArgumentException e) {
+                throw new MalformedBodyException("Invalid Base64 content", e);
+            }
+        }
+
+        File decodedFile = null;
+        try {
+            decodedFile = Files.createTempFile("autogram-request-", ".tmp").toFile();
+            try (var in = new BufferedInputStream(new FileInputStream(file));
+                 var out = new BufferedOutputStream(new FileOutputStream(decodedFile))) {
+                Base64.getDecoder().wrap(in).transferTo(out);
+
+                // the decoder stops at padding, anything left in the content is not valid Base64
+                if (in.read() != -1)
+                    throw new IOException("Unexpected characters after Base64 padding");
+            }
+
+            return new StreamedContent(null, decodedFile);
+
+        } catch (IOException e) {
+            if (decodedFile != null && !decodedFile.delete())
+                decodedFile.deleteOnExit();
+
+            throw new MalformedBodyException("Invalid Base64 content", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (decoded != null)
+            decoded.close();
+
+        if (file != null && !file.delete())
+            file.deleteOnExit();
+    }
+}
@@ -0,0 +1,37 @@
+package digital.slovensko.autogram.core.server;
+
+import java.util.List;
+
+public class StreamedRequest<T> implements AutoCloseable {
+    private final T body;
+    private final List<StreamedContent> contents;
+
+    StreamedRequest(T body, List<StreamedContent> contents) {
+        this.body = body;
+        this.contents = contents;
+    }
+
+    public T body() {
+        return body;
+    }
+
+    /**
+     * Content decoded while this request was parsed, null for regular Base64 content. Only the request's own
+     * markers are resolved, a marker copied into another request is rejected as invalid Base64.
+     */
+    public StreamedContent findContent(String content) {
+        if (content == null)
+            return null;
+
+        for (var streamedContent : contents)
+            if (streamedContent.getMarker().equals(content))
+                return streamedContent;
+
+        return null;
+    }
+
+    @Override
+    public void close() {
+        contents.forEach(StreamedContent::close);
+    }
+}
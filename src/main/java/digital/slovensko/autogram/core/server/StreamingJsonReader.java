@@ -0,0 +1,314 @@
+package digital.slovensko.autogram.core.server;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSyntaxException;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses a JSON request body incrementally into a Gson tree. String values of "content" members never exist as a
+ * String, they are written out as they are read and the tree holds a StreamedContent marker in their place. Whether
+ * such content is Base64 is decided when it is resolved, the declaring member may follow it in the body.
+ * Only strict JSON is accepted, unlike gson.fromJson this reader rejects comments, single quotes and unquoted names.
+ */
+class StreamingJsonReader {
+    private static final String STREAMED_MEMBER = "content";
+    private static final int MAX_DEPTH = 64;
+
+    private final Reader reader;
+    private final long spillThreshold;
+    private final List<StreamedContent> contents = new ArrayList<>();
+    private final char[] buffer = new char[8192];
+    private int position = 0;
+    private int limit = 0;
+    private int depth = 0;
+
+    StreamingJsonReader(InputStream inputStream, long spillThreshold) {
+        this.reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
+        this.spillThreshold = spillThreshold;
+    }
+
+    // Returns null for an empty body
+    JsonElement read() throws IOException {
+        try {
+            var c = nextNonWhitespace();
+            if (c == -1)
+                return null;
+
+            var value = readValue(c, null);
+            if (nextNonWhitespace() != -1)
+                throw syntaxError("Unexpected data after JSON value");
+
+            return value;
+
+        } catch (IOException | RuntimeException e) {
+            closeContents();
+            throw e;
+        }
+    }
+
+    List<StreamedContent> getContents() {
+        return contents;
+    }
+
+    void closeContents() {
+        contents.forEach(StreamedContent::close);
+        contents.clear();
+    }
+
+    private JsonElement readValue(int c, String memberName) throws IOException {
+        return switch (c) {
+            case '{' -> readObject();
+            case '[' -> readArray();
+            case '"' -> STREAMED_MEMBER.equals(memberName) ? new JsonPrimitive(readStreamedContent()) : new JsonPrimitive(readString());
+            case 't' -> readLiteral("rue", new JsonPrimitive(true));
+            case 'f' -> readLiteral("alse", new JsonPrimitive(false));
+            case 'n' -> readLiteral("ull", JsonNull.INSTANCE);
+            default -> {
+                if (c != '-' && (c < '0' || c > '9'))
+                    throw syntaxError("Unexpected character");
+
+                yield readNumber(c);
+            }
+        };
+    }
+
+    private JsonObject readObject() throws IOException {
+        enter();
+        var object = new JsonObject();
+        var c = nextNonWhitespace();
+        while (c != '}') {
+            if (c != '"')
+                throw syntaxError("Expected member name");
+
+            var name = readString();
+            if (nextNonWhitespace() != ':')
+                throw syntaxError("Expected ':'");
+
+            object.add(name, readValue(nextNonWhitespace(), name));
+
+            c = nextNonWhitespace();
+            if (c == ',')
+                c = nextNonWhitespace();
+            else if (c != '}')
+                throw syntaxError("Expected ',' or '}'");
+        }
+        depth--;
+
+        return object;
+    }
+
+    private JsonArray readArray() throws IOException {
+        enter();
+        var array = new JsonArray();
+        var c = nextNonWhitespace();
+        while (c != ']') {
+            array.add(readValue(c, null));
+
+            c = nextNonWhitespace();
+            if (c == ',')
+                c = nextNonWhitespace();
+            else if (c != ']')
+                throw syntaxError("Expected ',' or ']'");
+        }
+        depth--;
+
+        return array;
+    }
+
+    private String readString() throws IOException {
+        var builder = new StringBuilder();
+        for (var c = nextChar(); c != '"'; c = nextChar())
+            builder.append(c == '\\' ? readEscaped() : (char) c);
+
+        return builder.toString();
+    }
+
+    private String readStreamedContent() throws IOException {
+        var output = new SpillingOutputStream(spillThreshold);
+        try {
+            var writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+            var chunk = new char[4096];
+            var length = 0;
+            for (var c = nextChar(); c != '"'; c = nextChar()) {
+                chunk[length++] = c == '\\' ? readEscaped() : (char) c;
+                if (length == chunk.length) {
+                    writer.write(chunk, 0, length);
+                    length = 0;
+                }
+            }
+            writer.write(chunk, 0, length);
+            writer.flush();
+
+        } catch (IOException | RuntimeException e) {
+            output.discard();
+            throw e;
+        }
+
+        var streamedContent = output.finish();
+        contents.add(streamedContent);
+
+        return streamedContent.getMarker();
+    }
+
+    private JsonElement readLiteral(String rest, JsonElement value) throws IOException {
+        for (var i = 0; i < rest.length(); i++)
+            if (nextChar() != rest.charAt(i))
+                throw syntaxError("Unexpected literal");
+
+        return value;
+    }
+
+    private JsonPrimitive readNumber(int first) throws IOException {
+        var builder = new StringBuilder().append((char) first);
+        for (var c = next(); c != -1; c = next()) {
+            if ((c < '0' || c > '9') && c != '.' && c != 'e' && c != 'E' && c != '+' && c != '-') {
+                position--;
+                break;
+            }
+
+            builder.append((char) c);
+        }
+
+        try {
+            return new JsonPrimitive(new BigDecimal(builder.toString()));
+        } catch (NumberFormatException e) {
+            throw syntaxError("Malformed number");
+        }
+    }
+
+    private char readEscaped() throws IOException {
+        var c = nextChar();
+        return switch (c) {
+            case '"', '\\', '/' -> (char) c;
+            case 'b' -> '\b';
+            case 'f' -> '\f';
+            case 'n' -> '\n';
+            case 'r' -> '\r';
+            case 't' -> '\t';
+            case 'u' -> {
+                var hex = new StringBuilder();
+                for (var i = 0; i < 4; i++)
+                    hex.append((char) nextChar());
+
+                try {
+                    yield (char) Integer.parseInt(hex.toString(), 16);
+                } catch (NumberFormatException e) {
+                    throw syntaxError("Malformed unicode escape");
+                }
+            }
+            default -> throw syntaxError("Invalid escape sequence");
+        };
+    }
+
+    private void enter() {
+        if (++depth > MAX_DEPTH)
+            throw syntaxError("JSON nested too deeply");
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        var c = next();
+        while (c == ' ' || c == '\t' || c == '\n' || c == '\r')
+            c = next();
+
+        return c;
+    }
+
+    private int nextChar() throws IOException {
+        var c = next();
+        if (c == -1)
+            throw syntaxError("Unexpected end of JSON");
+
+        return c;
+    }
+
+    private int next() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+
+        return buffer[position++];
+    }
+
+    private static JsonSyntaxException syntaxError(String message) {
+        return new JsonSyntaxException(message);
+    }
+
+    private static class SpillingOutputStream extends OutputStream {
+        private final long threshold;
+        private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        private File file;
+        private OutputStream fileStream;
+
+        SpillingOutputStream(long threshold) {
+            this.threshold = threshold;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (fileStream == null && memory.size() + len > threshold)
+                spill();
+
+            if (fileStream != null)
+                fileStream.write(b, off, len);
+            else
+                memory.write(b, off, len);
+        }
+
+        private void spill() throws IOException {
+            file = Files.createTempFile("autogram-request-", ".tmp").toFile();
+            fileStream = new BufferedOutputStream(new FileOutputStream(file));
+            memory.writeTo(fileStream);
+            memory = null;
+        }
+
+        StreamedContent finish() throws IOException {
+            if (fileStream == null)
+                return new StreamedContent(memory.toByteArray(), null);
+
+            fileStream.close();
+            return new StreamedContent(null, file);
+        }
+
+        void discard() {
+            if (fileStream == null)
+                return;
+
+            try {
+                fileStream.close();
+            } catch (IOException ignored) {
+            }
+
+            if (!file.delete())
+                file.deleteOnExit();
+        }
+    }
+}
@@ -4,6 +4,7 @@ import java.util.Base64;
 import java.util.List;
 
 import digital.slovensko.autogram.core.AutogramMimeType;
+import digital.slovensko.autogram.core.server.StreamedRequest;
 import digital.slovensko.autogram.core.server.errors.MalformedBodyException;
 import eu.europa.esig.dss.enumerations.MimeType;
 import eu.europa.esig.dss.model.DSSDocument;
@@ -29,23 +30,16 @@ public record CompareRequestBody(List<Document> originalDocuments, Document sign
             throw new MalformedBodyException("Missing signed document", "signedDocument content is null");
     }
 
-    public List<DSSDocument> getOriginalDSSDocuments() throws MalformedBodyException {
-        return originalDocuments.stream().map(CompareRequestBody::toDSSDocument).toList();
+    public List<DSSDocument> getOriginalDSSDocuments(StreamedRequest<?> request) throws MalformedBodyException {
+        return originalDocuments.stream().map(document -> toDSSDocument(document, request)).toList();
     }
 
-    public DSSDocument getSignedDSSDocument() throws MalformedBodyException {
-        return toDSSDocument(signedDocument);
+    public DSSDocument getSignedDSSDocument(StreamedRequest<?> request) throws MalformedBodyException {
+        return toDSSDocument(signedDocument, request);
     }
 
-    private static DSSDocument toDSSDocument(Document document) throws MalformedBodyException {
-        byte[] bytes;
-        try {
-            bytes = Base64.getDecoder().decode(document.content());
-        } catch (IllegalArgumentException e) {
-            throw new MalformedBodyException("Invalid Base64 content", e);
-        }
-
-        var dssDocument = new InMemoryDocument(bytes, document.filename());
+    private static DSSDocument toDSSDocument(Document document, StreamedRequest<?> request) throws MalformedBodyException {
+        var dssDocument = decode(document, request);
         var mimeType = parseMimeType(document.mimeType());
         if (mimeType != null)
             dssDocument.setMimeType(mimeType);
@@ -53,6 +47,18 @@ public record CompareRequestBody(List<Document> originalDocuments, Document sign
         return dssDocument;
     }
 
+    private static DSSDocument decode(Document document, StreamedRequest<?> request) throws MalformedBodyException {
+        var streamedContent = request.findContent(document.content());
+        if (streamedContent != null)
+            return streamedContent.toDocument(document.filename());
+
+        try {
+            return new InMemoryDocument(Base64.getDecoder().decode(document.content()), document.filename());
+        } catch (IllegalArgumentException e) {
+            throw new MalformedBodyException("Invalid Base64 content", e);
+        }
+    }
+
     private static MimeType parseMimeType(String mimeType) {
         if (mimeType == null)
             return null;
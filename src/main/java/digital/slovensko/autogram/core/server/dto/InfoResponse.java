@@ -1,6 +1,12 @@
 package digital.slovensko.autogram.core.server.dto;
 
-public record InfoResponse (String version, String status, boolean trustedListsLoaded) {
+import digital.slovensko.autogram.core.validation.TrustedListsOrigin;
+
+public record InfoResponse (String version, String status, boolean trustedListsLoaded, TrustedListsOrigin trustedListsOrigin) {
+    public InfoResponse(String version, String status, boolean trustedListsLoaded) {
+        this(version, status, trustedListsLoaded, null);
+    }
+
     public static String getStatus() {
         return "READY"; // TODO: check if server is ready
     }
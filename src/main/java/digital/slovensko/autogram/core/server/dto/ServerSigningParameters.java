@@ -4,12 +4,12 @@ import digital.slovensko.autogram.core.SigningParameters;
 import digital.slovensko.autogram.core.eforms.dto.EFormAttributes;
 import digital.slovensko.autogram.core.eforms.dto.XsltParams;
 import digital.slovensko.autogram.core.errors.UnsupportedSignatureLevelException;
+import digital.slovensko.autogram.core.util.DocumentFormat;
 import digital.slovensko.autogram.core.validation.SignatureValidator;
 import digital.slovensko.autogram.core.server.errors.MalformedBodyException;
 import digital.slovensko.autogram.core.server.errors.RequestValidationException;
 import eu.europa.esig.dss.enumerations.*;
 import eu.europa.esig.dss.model.DSSDocument;
-import eu.europa.esig.dss.model.InMemoryDocument;
 
 import javax.xml.crypto.dsig.CanonicalizationMethod;
 import java.nio.charset.StandardCharsets;
@@ -270,11 +270,11 @@ public class ServerSigningParameters {
         return container;
     }
 
-    public void resolveSigningLevel(InMemoryDocument document) throws RequestValidationException {
+    public void resolveSigningLevel(DSSDocument document) throws RequestValidationException {
         if (level != null && level.name().length() > 4)
             return;
 
-        var report = SignatureValidator.getSignedDocumentSimpleReport(document);
+        var report = SignatureValidator.getSignedDocumentSimpleReport(document, DocumentFormat.detect(document));
         var signedLevel = SignatureValidator.getSignedDocumentSignatureLevel(report);
         if (signedLevel == null)
             throw new RequestValidationException("Parameters.Level can't be empty if document is not signed yet", "");
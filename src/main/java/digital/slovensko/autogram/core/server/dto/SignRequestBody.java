@@ -6,6 +6,10 @@ import digital.slovensko.autogram.core.eforms.xdc.XDCValidator;
 import digital.slovensko.autogram.core.errors.TransformationParsingErrorException;
 import digital.slovensko.autogram.core.server.errors.MalformedBodyException;
 import digital.slovensko.autogram.core.server.errors.RequestValidationException;
+import digital.slovensko.autogram.core.server.StreamedContent;
+import digital.slovensko.autogram.core.server.StreamedRequest;
+import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.model.FileDocument;
 import eu.europa.esig.dss.model.InMemoryDocument;
 
 import java.util.Base64;
@@ -18,6 +22,8 @@ public class SignRequestBody {
     private ServerSigningParameters parameters;
     private final String payloadMimeType;
     private final String batchId;
+    private transient DSSDocument decodedDocument;
+    private transient StreamedContent streamedContent;
 
     public SignRequestBody(Document document, ServerSigningParameters parameters, String payloadMimeType) {
         this(document, parameters, payloadMimeType, null);
@@ -52,15 +58,43 @@ public class SignRequestBody {
         parameters.resolveSigningLevel(getDocument());
     }
 
-    public InMemoryDocument getDocument() {
-        var content = decodeDocumentContent(document.content(), isBase64());
-        var filename = document.filename();
+    public DSSDocument getDocument() {
+        if (decodedDocument == null)
+            decodedDocument = decodeDocument();
 
+        // Every caller gets its own document, they all share the decoded content
+        if (decodedDocument instanceof FileDocument fileDocument) {
+            var copy = new FileDocument(fileDocument.getFile());
+            copy.setName(fileDocument.getName());
+            copy.setMimeType(fileDocument.getMimeType());
+            return copy;
+        }
+
+        var inMemory = (InMemoryDocument) decodedDocument;
+        return new InMemoryDocument(inMemory.getBytes(), inMemory.getName(), inMemory.getMimeType());
+    }
+
+    // Uses the content read while the request was parsed, call before the document is first needed
+    public void resolveStreamedContent(StreamedRequest<?> request) {
+        streamedContent = request.findContent(document == null ? null : document.content());
+    }
+
+    private DSSDocument decodeDocument() {
+        if (streamedContent != null)
+            return withContentMimeType(streamedContent.toDocument(document.filename(), isBase64()));
+
+        var decoded = new InMemoryDocument(decodeDocumentContent(document.content(), isBase64()), document.filename());
+
+        return withContentMimeType(decoded);
+    }
+
+    private DSSDocument withContentMimeType(DSSDocument decoded) {
         var mimeType = fromMimeTypeString(payloadMimeType.split(";")[0]);
-        if (isXML(mimeType) && XDCValidator.isXDCContent(new InMemoryDocument(content, filename, mimeType)))
-            mimeType = AutogramMimeType.XML_DATACONTAINER_WITH_CHARSET;
+        decoded.setMimeType(mimeType);
+        if (isXML(mimeType) && XDCValidator.isXDCContent(decoded))
+            decoded.setMimeType(AutogramMimeType.XML_DATACONTAINER_WITH_CHARSET);
 
-        return new InMemoryDocument(content, filename, mimeType);
+        return decoded;
     }
 
     public void validateSigningParameters() throws RequestValidationException, MalformedBodyException,
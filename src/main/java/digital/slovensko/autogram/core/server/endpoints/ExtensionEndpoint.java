@@ -4,6 +4,7 @@ import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import digital.slovensko.autogram.core.SignatureExtender;
 import digital.slovensko.autogram.core.server.EndpointUtils;
+import digital.slovensko.autogram.core.server.StreamedRequest;
 import digital.slovensko.autogram.core.server.dto.ErrorResponse;
 import digital.slovensko.autogram.core.server.dto.ExtensionRequestBody;
 import digital.slovensko.autogram.core.server.responders.DocumentAPIResponder;
@@ -17,11 +18,16 @@ public class ExtensionEndpoint implements HttpHandler {
 
     @Override
     public void handle(HttpExchange exchange) {
+        StreamedRequest<ExtensionRequestBody> request = null;
         try {
-            var body = EndpointUtils.loadFromJsonExchange(exchange, ExtensionRequestBody.class);
-            signatureExtender.extendDocument(body.document().getDecodedContent(), body.targetLevel(), new DocumentAPIResponder(exchange));
+            request = EndpointUtils.loadFromStreamingJsonExchange(exchange, ExtensionRequestBody.class);
+            var body = request.body();
+            signatureExtender.extendDocument(body.document().getDecodedContent(request), body.targetLevel(), new DocumentAPIResponder(exchange, request::close));
 
         } catch (Exception e) {
+            if (request != null)
+                request.close();
+
             EndpointUtils.respondWithError(ErrorResponse.buildFromException(e), exchange);
         }
     }
@@ -17,7 +17,8 @@ public class InfoEndpoint implements HttpHandler {
 
     @Override
     public void handle(HttpExchange exchange) throws IOException {
-        var response = new InfoResponse(version, InfoResponse.getStatus(), SignatureValidator.getInstance().areTLsLoaded());
+        var validator = SignatureValidator.getInstance();
+        var response = new InfoResponse(version, InfoResponse.getStatus(), validator.areTLsLoaded(), validator.getTrustedListsOrigin());
         var gson = new Gson();
 
         try (exchange) {
@@ -11,11 +11,11 @@ import digital.slovensko.autogram.core.validation.SignedVersionValidator;
 public class SignedVersionValidationEndpoint implements HttpHandler {
     @Override
     public void handle(HttpExchange exchange) {
-        try {
-            var body = EndpointUtils.loadFromJsonExchange(exchange, CompareRequestBody.class);
+        try (var request = EndpointUtils.loadFromStreamingJsonExchange(exchange, CompareRequestBody.class)) {
+            var body = request.body();
             body.validate();
 
-            var responseBody = SignedVersionValidator.compare(body.getOriginalDSSDocuments(), body.getSignedDSSDocument());
+            var responseBody = SignedVersionValidator.compare(body.getOriginalDSSDocuments(request), body.getSignedDSSDocument(request));
             EndpointUtils.respondWith(responseBody, exchange);
 
         } catch (Exception e) {
@@ -4,6 +4,7 @@ import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import digital.slovensko.autogram.core.errors.DocumentNotSignedYetException;
 import digital.slovensko.autogram.core.validation.SignatureValidator;
+import digital.slovensko.autogram.core.validation.ValidationResultCache;
 import digital.slovensko.autogram.core.server.EndpointUtils;
 import digital.slovensko.autogram.core.server.dto.Document;
 import digital.slovensko.autogram.core.server.dto.ErrorResponse;
@@ -11,24 +12,44 @@ import digital.slovensko.autogram.core.server.dto.ValidationResponseBody;
 import digital.slovensko.autogram.core.server.errors.MalformedBodyException;
 
 public class ValidationEndpoint implements HttpHandler {
+    private final ValidationResultCache resultCache;
+
+    public ValidationEndpoint() {
+        this(null);
+    }
+
+    public ValidationEndpoint(ValidationResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
     @Override
     public void handle(HttpExchange exchange) {
-        try {
-            var body = EndpointUtils.loadFromJsonExchange(exchange, Document.class);
+        try (var request = EndpointUtils.loadFromStreamingJsonExchange(exchange, Document.class)) {
+            var body = request.body();
             if (body.content() == null)
                 throw new MalformedBodyException("Document content is null", "Document content is null");
 
-            var document = body.getDecodedContent();
+            var document = body.getDecodedContent(request);
             try (var stream = document.openStream()) {
-                if (stream.readAllBytes().length < 1)
+                if (stream.read() < 0)
                     throw new MalformedBodyException("Document content is empty", "Document content is empty");
             }
 
+            var cacheKey = resultCache != null ? resultCache.keyOf(document) : null;
+            var cachedResponseBody = cacheKey != null ? resultCache.get(cacheKey) : null;
+            if (cachedResponseBody != null) {
+                EndpointUtils.respondWith(cachedResponseBody, exchange);
+                return;
+            }
+
             var reportsAndValidator = SignatureValidator.getInstance().validate(document);
             if (reportsAndValidator == null || reportsAndValidator.reports() == null)
                 throw new DocumentNotSignedYetException();
 
             var responseBody = ValidationResponseBody.build(reportsAndValidator.reports(), reportsAndValidator.validator(), document);
+            if (cacheKey != null)
+                resultCache.put(cacheKey, responseBody, reportsAndValidator.reports());
+
             EndpointUtils.respondWith(responseBody, exchange);
 
         } catch (Exception e) {
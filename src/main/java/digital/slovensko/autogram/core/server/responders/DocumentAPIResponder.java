@@ -5,23 +5,36 @@ import digital.slovensko.autogram.core.Responder;
 import digital.slovensko.autogram.core.dto.SignedDocument;
 import digital.slovensko.autogram.core.errors.AutogramException;
 import digital.slovensko.autogram.core.server.EndpointUtils;
-import digital.slovensko.autogram.core.server.dto.Document;
 import digital.slovensko.autogram.core.server.dto.ErrorResponse;
 
 public class DocumentAPIResponder implements Responder {
     private final HttpExchange exchange;
+    private final Runnable onComplete;
 
     public DocumentAPIResponder(HttpExchange exchange) {
+        this(exchange, () -> {});
+    }
+
+    public DocumentAPIResponder(HttpExchange exchange, Runnable onComplete) {
         this.exchange = exchange;
+        this.onComplete = onComplete;
     }
 
     @Override
     public void onSuccess(SignedDocument signedDocument) throws AutogramException {
-        EndpointUtils.respondWith(Document.buildFromDSS(signedDocument.dssDocument()), exchange);
+        try {
+            EndpointUtils.respondWithDocument(signedDocument.dssDocument(), exchange);
+        } finally {
+            onComplete.run();
+        }
     }
 
     @Override
     public void onError(AutogramException error) {
-        EndpointUtils.respondWithError(ErrorResponse.buildFromException(error), exchange);
+        try {
+            EndpointUtils.respondWithError(ErrorResponse.buildFromException(error), exchange);
+        } finally {
+            onComplete.run();
+        }
     }
 }
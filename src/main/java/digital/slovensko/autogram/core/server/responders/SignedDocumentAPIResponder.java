@@ -6,7 +6,6 @@ import digital.slovensko.autogram.core.dto.SignedDocument;
 import digital.slovensko.autogram.core.errors.AutogramException;
 import digital.slovensko.autogram.core.server.EndpointUtils;
 import digital.slovensko.autogram.core.server.dto.ErrorResponse;
-import digital.slovensko.autogram.core.server.dto.SignedDocumentResponse;
 
 public class SignedDocumentAPIResponder implements Responder {
     private final HttpExchange exchange;
@@ -20,7 +19,7 @@ public class SignedDocumentAPIResponder implements Responder {
         var signer = signedDocument.certificateToken().getSubject().getPrincipal().toString();
         var issuer = signedDocument.certificateToken().getIssuer().getPrincipal().toString();
 
-        EndpointUtils.respondWith(SignedDocumentResponse.buildFormDSS(signedDocument.dssDocument(), signer, issuer), exchange);
+        EndpointUtils.respondWithSignedDocument(signedDocument.dssDocument(), signer, issuer, exchange);
     }
 
     @Override
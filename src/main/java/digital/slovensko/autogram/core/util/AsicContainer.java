@@ -0,0 +1,285 @@
+package digital.slovensko.autogram.core.util;
+
+import digital.slovensko.autogram.core.AutogramMimeType;
+import eu.europa.esig.dss.asic.common.ASiCUtils;
+import eu.europa.esig.dss.enumerations.MimeType;
+import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.model.FileDocument;
+import eu.europa.esig.dss.model.InMemoryDocument;
+import org.xml.sax.InputSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Index of an ASiC container. A file-backed container is indexed from the ZIP central directory and only the
+ * manifest and, when asked for, the signed document are inflated. Any other container is read once as a stream,
+ * inflating every entry is unavoidable there, and the first signed document is kept from that pass. Signature
+ * files are only recognized by name, never parsed, and the manifest is parsed only when a mime type is asked for.
+ *
+ * <p>Entries are read with the limits DSS applies to secure containers: at most {@link #MAX_ENTRIES} entries and
+ * entries larger than {@link #RATIO_THRESHOLD} bytes may not be compressed more than {@link #MAX_COMPRESSION_RATIO}
+ * times. The manifest may not be larger than {@link #RATIO_THRESHOLD} bytes.</p>
+ */
+public class AsicContainer {
+    static final int MAX_ENTRIES = 1000;
+    static final long RATIO_THRESHOLD = 1000000;
+    static final long MAX_COMPRESSION_RATIO = 100;
+
+    private static final String MANIFEST = ASiCUtils.META_INF_FOLDER + "manifest.xml";
+
+    private final File file;
+    private final byte[] firstSignedDocument;
+    private final List<String> entryNames = new ArrayList<>();
+    private final List<String> signedDocumentNames = new ArrayList<>();
+    private boolean hasSignatureFiles = false;
+    private byte[] manifest;
+    private Map<String, String> manifestMimeTypes;
+
+    private AsicContainer(File file) {
+        this.file = file;
+        this.firstSignedDocument = null;
+    }
+
+    private AsicContainer(byte[] firstSignedDocument) {
+        this.file = null;
+        this.firstSignedDocument = firstSignedDocument;
+    }
+
+    // Returns null when the document is not a ZIP container or exceeds the container limits
+    public static AsicContainer inspect(DSSDocument container) {
+        try {
+            var inspected = container instanceof FileDocument fileDocument
+                    ? inspectFile(fileDocument.getFile())
+                    : inspectStream(container);
+
+            if (inspected.entryNames.isEmpty())
+                return null;
+
+            return inspected;
+
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static AsicContainer inspectFile(File file) throws IOException {
+        var container = new AsicContainer(file);
+        try (var zip = new ZipFile(file)) {
+            if (zip.size() > MAX_ENTRIES)
+                throw new IOException("Too many entries in the container");
+
+            for (var entries = zip.entries(); entries.hasMoreElements(); ) {
+                var entry = entries.nextElement();
+                if (container.add(entry))
+                    container.manifest = readEntry(zip, entry, RATIO_THRESHOLD);
+            }
+        }
+
+        return container;
+    }
+
+    private static AsicContainer inspectStream(DSSDocument document) throws IOException {
+        var entries = new ArrayList<ZipEntry>();
+        byte[] manifest = null;
+        byte[] firstSignedDocument = null;
+
+        try (var compressed = new CountingInputStream(document.openStream());
+             var zip = new ZipInputStream(compressed)) {
+            for (var entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                if (entries.size() == MAX_ENTRIES)
+                    throw new IOException("Too many entries in the container");
+
+                entries.add(entry);
+                var isManifest = entry.getName().equals(MANIFEST);
+                var content = new ByteArrayOutputStream();
+                var keep = isManifest || firstSignedDocument == null && isSignedDocument(entry);
+                var compressedStart = compressed.getCount();
+                copyEntry(zip, () -> compressed.getCount() - compressedStart,
+                        keep ? content : OutputStream.nullOutputStream(), isManifest ? RATIO_THRESHOLD : Long.MAX_VALUE);
+
+                if (isManifest)
+                    manifest = content.toByteArray();
+                else if (keep)
+                    firstSignedDocument = content.toByteArray();
+            }
+        }
+
+        var container = new AsicContainer(firstSignedDocument);
+        entries.forEach(container::add);
+        container.manifest = manifest;
+        return container;
+    }
+
+    // Returns true for the manifest entry
+    private boolean add(ZipEntry entry) {
+        var name = entry.getName();
+        entryNames.add(name);
+        if (name.equals(MANIFEST))
+            return true;
+
+        if (isSignedDocument(entry))
+            signedDocumentNames.add(name);
+        else if (name.startsWith(ASiCUtils.META_INF_FOLDER) && ASiCUtils.isSignature(name))
+            hasSignatureFiles = true;
+
+        return false;
+    }
+
+    private static boolean isSignedDocument(ZipEntry entry) {
+        var name = entry.getName();
+        return !entry.isDirectory() && !ASiCUtils.isMimetype(name) && !name.startsWith(ASiCUtils.META_INF_FOLDER);
+    }
+
+    // The central directory declares the compressed size, it is checked against what actually inflates
+    private static byte[] readEntry(ZipFile zip, ZipEntry entry, long maxSize) throws IOException {
+        var content = new ByteArrayOutputStream();
+        try (var in = zip.getInputStream(entry)) {
+            copyEntry(in, entry::getCompressedSize, content, maxSize);
+        }
+
+        return content.toByteArray();
+    }
+
+    private static void copyEntry(InputStream in, LongSupplier compressedSize, OutputStream out, long maxSize)
+            throws IOException {
+        var size = 0L;
+        var buffer = new byte[8192];
+        for (var read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+            size += read;
+            if (size > maxSize)
+                throw new IOException("Container entry is too large");
+
+            if (size > RATIO_THRESHOLD && size > compressedSize.getAsLong() * MAX_COMPRESSION_RATIO)
+                throw new IOException("Container entry is compressed too much");
+
+            out.write(buffer, 0, read);
+        }
+    }
+
+    public List<String> getEntryNames() {
+        return entryNames;
+    }
+
+    public List<String> getSignedDocumentNames() {
+        return signedDocumentNames;
+    }
+
+    public boolean hasSignatureFiles() {
+        return hasSignatureFiles;
+    }
+
+    public boolean hasManifest() {
+        return manifest != null;
+    }
+
+    // A new document on every call, with the mime type derived from its name. Returns null when it can not be read.
+    public DSSDocument getFirstSignedDocument() {
+        if (signedDocumentNames.isEmpty())
+            return null;
+
+        var name = signedDocumentNames.get(0);
+        if (file == null)
+            return new InMemoryDocument(firstSignedDocument, name);
+
+        try (var zip = new ZipFile(file)) {
+            var entry = zip.getEntry(name);
+            if (entry == null)
+                return null;
+
+            return new InMemoryDocument(readEntry(zip, entry, Long.MAX_VALUE), name);
+
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public MimeType getMimeTypeFromManifest(String documentName) {
+        var mimeType = getManifestMimeTypes().get(documentName);
+        if (mimeType == null)
+            return null;
+
+        return AutogramMimeType.fromMimeTypeString(mimeType);
+    }
+
+    private Map<String, String> getManifestMimeTypes() {
+        if (manifestMimeTypes == null)
+            manifestMimeTypes = parseManifest(manifest);
+
+        return manifestMimeTypes;
+    }
+
+    private static Map<String, String> parseManifest(byte[] manifest) {
+        var mimeTypes = new HashMap<String, String>();
+        if (manifest == null)
+            return mimeTypes;
+
+        try {
+            var document = XMLUtils.getSecureDocumentBuilder().parse(new InputSource(new ByteArrayInputStream(manifest)));
+            var fileEntries = document.getDocumentElement().getElementsByTagNameNS("urn:oasis:names:tc:opendocument:xmlns:manifest:1.0", "file-entry");
+            for (var i = 0; i < fileEntries.getLength(); i++) {
+                var attributes = fileEntries.item(i).getAttributes();
+                if (attributes.getLength() < 2)
+                    continue;
+
+                mimeTypes.putIfAbsent(attributes.item(0).getNodeValue(), attributes.item(1).getNodeValue());
+            }
+
+        } catch (Exception e) {
+            // an unreadable manifest provides no mime types
+        }
+
+        return mimeTypes;
+    }
+
+    // Counts the compressed bytes the ZIP reader consumed, read-ahead included
+    private static class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var b = super.read();
+            if (b >= 0)
+                count++;
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            var read = super.read(b, off, len);
+            if (read > 0)
+                count += read;
+
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            var skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
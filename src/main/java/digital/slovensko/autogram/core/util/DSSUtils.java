@@ -16,6 +16,8 @@ import eu.europa.esig.dss.pades.signature.PAdESService;
 import eu.europa.esig.dss.pades.validation.PDFDocumentValidatorFactory;
 import eu.europa.esig.dss.signature.AbstractSignatureService;
 import eu.europa.esig.dss.spi.validation.CertificateVerifier;
+import eu.europa.esig.dss.spi.validation.CommonCertificateVerifier;
+import eu.europa.esig.dss.spi.x509.tsp.TSPSource;
 import eu.europa.esig.dss.validation.SignedDocumentValidator;
 import eu.europa.esig.dss.xades.signature.XAdESService;
 import eu.europa.esig.dss.xades.validation.XMLDocumentValidatorFactory;
@@ -30,6 +32,19 @@ import java.security.cert.CertificateFactory;
 import java.util.Base64;
 
 public class DSSUtils {
+    // Signing only checks the signing certificate itself, one verifier without trusted sources serves all signatures
+    private static final CertificateVerifier SIGNING_CERTIFICATE_VERIFIER = new CommonCertificateVerifier();
+    private static final LruCache<ServiceKey, AbstractSignatureService> SERVICES = new LruCache<>(64);
+
+    private static final PDFDocumentValidatorFactory PDF_VALIDATOR_FACTORY = new PDFDocumentValidatorFactory();
+    private static final XMLDocumentValidatorFactory XML_VALIDATOR_FACTORY = new XMLDocumentValidatorFactory();
+    private static final ASiCContainerWithXAdESValidatorFactory ASIC_XADES_VALIDATOR_FACTORY = new ASiCContainerWithXAdESValidatorFactory();
+    private static final ASiCContainerWithCAdESValidatorFactory ASIC_CADES_VALIDATOR_FACTORY = new ASiCContainerWithCAdESValidatorFactory();
+    private static final CMSDocumentValidatorFactory CMS_VALIDATOR_FACTORY = new CMSDocumentValidatorFactory();
+
+    private record ServiceKey(SignatureForm signatureForm, ASiCContainerType container, CertificateVerifier certificateVerifier, TSPSource tspSource) {
+    }
+
     public static String parseCN(String rfc2253) {
         try {
             var ldapName = new LdapName(rfc2253);
@@ -67,6 +82,26 @@ public class DSSUtils {
         };
     }
 
+    /**
+     * Returns a service shared by all callers asking for the same signature form, container, verifier and TSP source.
+     * DSS services keep no per-signature state, so the shared instance can sign and extend documents concurrently.
+     * Callers must not reconfigure it, e.g. by calling setTspSource, and pass the TSP source here instead. The verifier
+     * is part of the key, so pass one that lives as long as the application, e.g. SignatureValidator#getCurrentVerifier.
+     */
+    public static AbstractSignatureService getSharedService(SignatureForm signatureForm, ASiCContainerType container, CertificateVerifier certificateVerifier, TSPSource tspSource) {
+        return SERVICES.computeIfAbsent(new ServiceKey(signatureForm, container, certificateVerifier, tspSource), key -> {
+            var service = getServiceForSignatureLevel(signatureForm, container, certificateVerifier);
+            if (tspSource != null)
+                service.setTspSource(tspSource);
+
+            return service;
+        });
+    }
+
+    public static CertificateVerifier getSigningCertificateVerifier() {
+        return SIGNING_CERTIFICATE_VERIFIER;
+    }
+
     public static String buildTooltipLabel(CertificateToken certificate) {
         var out = "";
         out += certificate.getSubject().getPrincipal().toString();
@@ -77,20 +112,47 @@ public class DSSUtils {
     }
 
     public static SignedDocumentValidator createDocumentValidator(DSSDocument document) {
-        if (new PDFDocumentValidatorFactory().isSupported(document))
-            return new PDFDocumentValidatorFactory().create(document);
+        return createDocumentValidator(document, DocumentFormat.detect(document));
+    }
+
+    /**
+     * Creates the validator for a document whose format was already detected. PDF, XML and CMS documents go straight
+     * to their factory, whose own check only looks at the same magic bytes. Only ZIP containers are inspected further
+     * and documents of unknown format are offered to all factories.
+     */
+    public static SignedDocumentValidator createDocumentValidator(DSSDocument document, DocumentFormat format) {
+        return switch (format) {
+            case PDF -> PDF_VALIDATOR_FACTORY.create(document);
+            case XML -> XML_VALIDATOR_FACTORY.create(document);
+            case CMS -> CMS_VALIDATOR_FACTORY.create(document);
+            case ZIP -> {
+                if (ASIC_XADES_VALIDATOR_FACTORY.isSupported(document))
+                    yield ASIC_XADES_VALIDATOR_FACTORY.create(document);
+
+                if (ASIC_CADES_VALIDATOR_FACTORY.isSupported(document))
+                    yield ASIC_CADES_VALIDATOR_FACTORY.create(document);
+
+                yield null;
+            }
+            case UNKNOWN -> createDocumentValidatorFromAnyFactory(document);
+        };
+    }
+
+    private static SignedDocumentValidator createDocumentValidatorFromAnyFactory(DSSDocument document) {
+        if (PDF_VALIDATOR_FACTORY.isSupported(document))
+            return PDF_VALIDATOR_FACTORY.create(document);
 
-        if (new XMLDocumentValidatorFactory().isSupported(document))
-            return new XMLDocumentValidatorFactory().create(document);
+        if (XML_VALIDATOR_FACTORY.isSupported(document))
+            return XML_VALIDATOR_FACTORY.create(document);
 
-        if (new ASiCContainerWithXAdESValidatorFactory().isSupported(document))
-            return new ASiCContainerWithXAdESValidatorFactory().create(document);
+        if (ASIC_XADES_VALIDATOR_FACTORY.isSupported(document))
+            return ASIC_XADES_VALIDATOR_FACTORY.create(document);
 
-        if (new ASiCContainerWithCAdESValidatorFactory().isSupported(document))
-            return new ASiCContainerWithCAdESValidatorFactory().create(document);
+        if (ASIC_CADES_VALIDATOR_FACTORY.isSupported(document))
+            return ASIC_CADES_VALIDATOR_FACTORY.create(document);
 
-        if (new CMSDocumentValidatorFactory().isSupported(document))
-            return new CMSDocumentValidatorFactory().create(document);
+        if (CMS_VALIDATOR_FACTORY.isSupported(document))
+            return CMS_VALIDATOR_FACTORY.create(document);
 
         return null;
     }
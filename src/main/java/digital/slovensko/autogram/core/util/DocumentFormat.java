@@ -0,0 +1,62 @@
+package digital.slovensko.autogram.core.util;
+
+import eu.europa.esig.dss.model.DSSDocument;
+
+import java.io.IOException;
+
+/**
+ * Container format of a document as far as signature validation is concerned, detected from the first bytes of the
+ * document. UNKNOWN documents may still be recognized by the validator factories themselves, e.g. by mime type.
+ */
+public enum DocumentFormat {
+    PDF,
+    XML,
+    ZIP,
+    CMS,
+    UNKNOWN;
+
+    private static final int PREFIX_LENGTH = 1024;
+
+    public static DocumentFormat detect(DSSDocument document) {
+        byte[] prefix;
+        try (var stream = document.openStream()) {
+            prefix = stream.readNBytes(PREFIX_LENGTH);
+        } catch (IOException | RuntimeException e) {
+            return UNKNOWN;
+        }
+
+        return detect(prefix);
+    }
+
+    static DocumentFormat detect(byte[] prefix) {
+        if (prefix.length == 0)
+            return UNKNOWN;
+
+        if (startsWith(prefix, "%PDF"))
+            return PDF;
+
+        if (startsWith(prefix, "PK"))
+            return ZIP;
+
+        if (prefix[0] == 0x30)
+            return CMS;
+
+        // Leading whitespace is left to the factories, they decide themselves whether such document is XML
+        var start = startsWith(prefix, "\u00EF\u00BB\u00BF") ? 3 : 0;
+        if (start < prefix.length && prefix[start] == '<')
+            return XML;
+
+        return UNKNOWN;
+    }
+
+    private static boolean startsWith(byte[] prefix, String magic) {
+        if (prefix.length < magic.length())
+            return false;
+
+        for (var i = 0; i < magic.length(); i++)
+            if ((prefix[i] & 0xFF) != magic.charAt(i))
+                return false;
+
+        return true;
+    }
+}
@@ -0,0 +1,111 @@
+package digital.slovensko.autogram.core.util;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Small thread-safe cache evicting the least recently used entries once it holds more than maxEntries values or
+ * their total weight exceeds maxWeight.
+ */
+public class LruCache<K, V> {
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final HashMap<K, Long> weights = new HashMap<>();
+    private final ToLongFunction<V> weigher;
+    private int maxEntries;
+    private long maxWeight;
+    private long totalWeight = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    public LruCache(int maxEntries) {
+        this(maxEntries, Long.MAX_VALUE, value -> 0);
+    }
+
+    public LruCache(int maxEntries, long maxWeight, ToLongFunction<V> weigher) {
+        this.weigher = weigher;
+        setLimits(maxEntries, maxWeight);
+    }
+
+    public synchronized void setLimits(int maxEntries, long maxWeight) {
+        if (maxEntries < 1 || maxWeight < 0)
+            throw new IllegalArgumentException("Cache limits must be positive");
+
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        evict();
+    }
+
+    public synchronized V get(K key) {
+        var value = entries.get(key);
+        if (value == null)
+            misses++;
+        else
+            hits++;
+
+        return value;
+    }
+
+    public synchronized void put(K key, V value) {
+        remove(key);
+
+        var weight = weigher.applyAsLong(value);
+        entries.put(key, value);
+        weights.put(key, weight);
+        totalWeight += weight;
+        evict();
+    }
+
+    public synchronized V remove(K key) {
+        var weight = weights.remove(key);
+        if (weight != null)
+            totalWeight -= weight;
+
+        return entries.remove(key);
+    }
+
+    // The value is computed outside of the lock, concurrent misses on the same key may compute it more than once
+    public V computeIfAbsent(K key, Function<K, V> loader) {
+        var value = get(key);
+        if (value != null)
+            return value;
+
+        value = loader.apply(key);
+        if (value != null)
+            put(key, value);
+
+        return value;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getWeight() {
+        return totalWeight;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weights.clear();
+        totalWeight = 0;
+    }
+
+    private void evict() {
+        var iterator = entries.keySet().iterator();
+        while (iterator.hasNext() && (entries.size() > maxEntries || totalWeight > maxWeight)) {
+            var key = iterator.next();
+            iterator.remove();
+            totalWeight -= weights.remove(key);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package digital.slovensko.autogram.core.util;
+
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Process-wide cache of compiled XSLT transformations. Templates are thread-safe, every use creates its own
+ * Transformer from them.
+ */
+public class TemplatesCache {
+    private static final int DEFAULT_MAX_ENTRIES = 128;
+    private static final long DEFAULT_MAX_WEIGHT = 64 * 1024 * 1024; // 64 MB of stylesheet source
+
+    private static final TemplatesCache instance = new TemplatesCache(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_WEIGHT);
+
+    private final LruCache<String, WeightedTemplates> cache;
+
+    public TemplatesCache(int maxEntries, long maxWeight) {
+        cache = new LruCache<>(maxEntries, maxWeight, WeightedTemplates::weight);
+    }
+
+    public static TemplatesCache getInstance() {
+        return instance;
+    }
+
+    public Templates getTemplates(String transformation, boolean allowRelaxedStylesheetParsing, TemplatesCompiler compiler)
+            throws TransformerException, IOException, SAXException, ParserConfigurationException {
+        var key = computeKey(transformation, allowRelaxedStylesheetParsing);
+        var cached = cache.get(key);
+        if (cached != null)
+            return cached.templates();
+
+        var templates = compiler.compile();
+        // stylesheet source length is a good enough proxy for the size of the compiled form
+        cache.put(key, new WeightedTemplates(templates, transformation.length() * 2L));
+
+        return templates;
+    }
+
+    public void setLimits(int maxEntries, long maxWeight) {
+        cache.setLimits(maxEntries, maxWeight);
+    }
+
+    public long getHits() {
+        return cache.getHits();
+    }
+
+    public long getMisses() {
+        return cache.getMisses();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    private static String computeKey(String transformation, boolean allowRelaxedStylesheetParsing) {
+        var digest = eu.europa.esig.dss.spi.DSSUtils.digest(DigestAlgorithm.SHA256, transformation.getBytes(StandardCharsets.UTF_8));
+
+        return Base64.getEncoder().encodeToString(digest) + (allowRelaxedStylesheetParsing ? ":relaxed" : ":strict");
+    }
+
+    @FunctionalInterface
+    public interface TemplatesCompiler {
+        Templates compile() throws TransformerException, IOException, SAXException, ParserConfigurationException;
+    }
+
+    private record WeightedTemplates(Templates templates, long weight) {
+    }
+}
@@ -4,6 +4,7 @@ import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.validation.SchemaFactory;
@@ -14,23 +15,96 @@ import org.xml.sax.SAXNotRecognizedException;
 import org.xml.sax.SAXNotSupportedException;
 import org.xml.sax.InputSource;
 
+/**
+ * Secure XML factories and parsers. Factories are configured once. Document builders and schema factories are not
+ * thread-safe and are kept per thread, document builders are reset on every call. Returned instances are shared
+ * and must not be reconfigured by callers.
+ */
 public abstract class XMLUtils {
+    private static final ThreadLocal<DocumentBuilder> documentBuilder = new ThreadLocal<>();
+    private static final ThreadLocal<DocumentBuilder> stylesheetDocumentBuilder = new ThreadLocal<>();
+    private static final ThreadLocal<SchemaFactory> schemaFactory = new ThreadLocal<>();
+    private static volatile DocumentBuilderFactory documentBuilderFactory;
+    private static volatile DocumentBuilderFactory stylesheetDocumentBuilderFactory;
+    private static volatile TransformerFactory transformerFactory;
+
     public static DocumentBuilder getSecureDocumentBuilder() throws ParserConfigurationException {
-        var builderFactory = createSecureDocumentBuilderFactory();
-        builderFactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        var builder = documentBuilder.get();
+        if (builder != null) {
+            builder.reset();
+            return builder;
+        }
+
+        builder = newDocumentBuilder(getDocumentBuilderFactory());
+        documentBuilder.set(builder);
 
-        return builderFactory.newDocumentBuilder();
+        return builder;
     }
 
     public static DocumentBuilder getSecureStylesheetDocumentBuilder() throws ParserConfigurationException {
-        var builderFactory = createSecureDocumentBuilderFactory();
-        var builder = builderFactory.newDocumentBuilder();
+        var builder = stylesheetDocumentBuilder.get();
+        if (builder != null) {
+            builder.reset();
+        } else {
+            builder = newDocumentBuilder(getStylesheetDocumentBuilderFactory());
+            stylesheetDocumentBuilder.set(builder);
+        }
+
+        // reset restores the original entity resolver, the blank one is set again on every call
         builder.setEntityResolver((publicId, systemId) -> new InputSource(new StringReader("")));
 
         return builder;
     }
 
+    // Saxon factories are thread-safe once configured, a single one is shared
     public static TransformerFactory getSecureTransformerFactory() throws TransformerConfigurationException {
+        var factory = transformerFactory;
+        if (factory == null) {
+            factory = createSecureTransformerFactory();
+            transformerFactory = factory;
+        }
+
+        return factory;
+    }
+
+    public static SchemaFactory getSecureSchemaFactory() throws SAXNotRecognizedException, SAXNotSupportedException {
+        var factory = schemaFactory.get();
+        if (factory == null) {
+            factory = createSecureSchemaFactory();
+            schemaFactory.set(factory);
+        }
+
+        return factory;
+    }
+
+    private static DocumentBuilderFactory getDocumentBuilderFactory() throws ParserConfigurationException {
+        var factory = documentBuilderFactory;
+        if (factory == null) {
+            factory = createSecureDocumentBuilderFactory();
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            documentBuilderFactory = factory;
+        }
+
+        return factory;
+    }
+
+    private static DocumentBuilderFactory getStylesheetDocumentBuilderFactory() throws ParserConfigurationException {
+        var factory = stylesheetDocumentBuilderFactory;
+        if (factory == null) {
+            factory = createSecureDocumentBuilderFactory();
+            stylesheetDocumentBuilderFactory = factory;
+        }
+
+        return factory;
+    }
+
+    private static DocumentBuilder newDocumentBuilder(DocumentBuilderFactory factory) throws ParserConfigurationException {
+        synchronized (factory) {
+            return factory.newDocumentBuilder();
+        }
+    }
+
+    private static TransformerFactory createSecureTransformerFactory() throws TransformerConfigurationException {
         var transformerFactory = TransformerFactory.newInstance();
         transformerFactory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
         transformerFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
@@ -39,7 +113,7 @@ public abstract class XMLUtils {
         return transformerFactory;
     }
 
-    public static SchemaFactory getSecureSchemaFactory() throws SAXNotRecognizedException, SAXNotSupportedException {
+    private static SchemaFactory createSecureSchemaFactory() throws SAXNotRecognizedException, SAXNotSupportedException {
         var schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
         schemaFactory.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
         schemaFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
@@ -49,6 +123,15 @@ public abstract class XMLUtils {
         return schemaFactory;
     }
 
+    public static XMLInputFactory getSecureXMLInputFactory() {
+        var inputFactory = XMLInputFactory.newFactory();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+
+        return inputFactory;
+    }
+
     private static DocumentBuilderFactory createSecureDocumentBuilderFactory() throws ParserConfigurationException {
         var builderFactory = DocumentBuilderFactory.newInstance();
         builderFactory.setNamespaceAware(true);
@@ -0,0 +1,106 @@
+package digital.slovensko.autogram.core.validation;
+
+import digital.slovensko.autogram.core.util.DSSUtils;
+import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.spi.signature.AdvancedSignature;
+import eu.europa.esig.dss.spi.validation.CommonCertificateVerifier;
+import eu.europa.esig.dss.validation.SignedDocumentValidator;
+
+import java.security.cert.CertificateEncodingException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * A document analysed for a single comparison. It is opened with one validator and its payloads, signatures and
+ * signature identities are computed lazily and only once, so a container is unzipped and its signatures are
+ * parsed a single time per request.
+ */
+class AnalysedDocument {
+    private final DSSDocument document;
+    private SignedDocumentValidator validator;
+    private boolean validatorBuilt = false;
+    private List<AdvancedSignature> signatures;
+    private List<String> signatureIdentities;
+    private List<DSSDocument> payloads;
+
+    AnalysedDocument(DSSDocument document) {
+        this.document = document;
+    }
+
+    boolean isSigned() {
+        return !getSignatures().isEmpty();
+    }
+
+    List<AdvancedSignature> getSignatures() {
+        if (signatures == null) {
+            var validator = getValidator();
+            signatures = validator == null ? List.of() : validator.getSignatures();
+        }
+
+        return signatures;
+    }
+
+    // Identities in the same order as getSignatures
+    List<String> getSignatureIdentities() {
+        if (signatureIdentities == null)
+            signatureIdentities = getSignatures().stream().map(AnalysedDocument::identityOf).toList();
+
+        return signatureIdentities;
+    }
+
+    /**
+     * Returns the payload documents of a file. For an unsigned file the file itself is the payload.
+     * For a signed file the documents covered by its signatures are returned.
+     */
+    List<DSSDocument> getPayloads() {
+        if (payloads == null)
+            payloads = extractPayloads();
+
+        return payloads;
+    }
+
+    private List<DSSDocument> extractPayloads() {
+        if (!isSigned())
+            return List.of(document);
+
+        var payloads = new ArrayList<DSSDocument>();
+        var seenNames = new HashSet<String>();
+        for (var signature : getSignatures()) {
+            for (var original : validator.getOriginalDocuments(signature.getId())) {
+                if (seenNames.add(original.getName()))
+                    payloads.add(original);
+            }
+        }
+
+        return payloads.isEmpty() ? List.of(document) : payloads;
+    }
+
+    private SignedDocumentValidator getValidator() {
+        if (!validatorBuilt) {
+            validator = DSSUtils.createDocumentValidator(document);
+            if (validator != null)
+                validator.setCertificateVerifier(new CommonCertificateVerifier());
+
+            validatorBuilt = true;
+        }
+
+        return validator;
+    }
+
+    private static String identityOf(AdvancedSignature signature) {
+        var certificateToken = signature.getSigningCertificateToken();
+        if (certificateToken != null) {
+            try {
+                var certificate = Base64.getEncoder().encodeToString(certificateToken.getCertificate().getEncoded());
+                var signingTime = signature.getSigningTime() != null ? signature.getSigningTime().getTime() : 0L;
+                return "cert:" + certificate + "|time:" + signingTime;
+            } catch (CertificateEncodingException e) {
+                // fall through to id-based identity
+            }
+        }
+
+        return "id:" + signature.getId();
+    }
+}
@@ -0,0 +1,179 @@
+package digital.slovensko.autogram.core.validation;
+
+import eu.europa.esig.dss.model.DSSException;
+import eu.europa.esig.dss.spi.client.http.DataLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * CRL downloads cached by URL until the nextUpdate of the downloaded CRL. CRLs without a readable nextUpdate are kept
+ * for the fallback time to live. When a directory is given, CRLs are also persisted there and reused after restart
+ * as long as they are still current. Serialization keeps the configuration, the deserialized loader starts with an
+ * empty in-memory cache.
+ */
+public class CachingCRLDataLoader implements DataLoader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingCRLDataLoader.class);
+
+    private static final int MAX_ENTRIES = 256;
+    private static final long MAX_BYTES = 64 * 1024 * 1024;
+
+    private final DataLoader dataLoader;
+    private final transient RevocationCache<byte[]> cache;
+    private final long fallbackTimeToLiveMillis;
+    // Path is not serializable
+    private volatile File directory;
+
+    public CachingCRLDataLoader(DataLoader dataLoader, Duration fallbackTimeToLive, Path directory) {
+        this.dataLoader = dataLoader;
+        this.cache = new RevocationCache<>(MAX_ENTRIES, MAX_BYTES, data -> data.length);
+        this.fallbackTimeToLiveMillis = fallbackTimeToLive.toMillis();
+        setDirectory(directory);
+    }
+
+    // Persists CRLs downloaded from now on into the directory, null keeps them in memory only
+    public void setDirectory(Path directory) {
+        this.directory = directory == null ? null : directory.toFile();
+    }
+
+    @Override
+    public byte[] get(String url) {
+        return cache.get(url, () -> {
+            var persisted = readPersisted(url);
+            if (persisted != null)
+                return persisted;
+
+            var data = dataLoader.get(url);
+            if (data == null || data.length == 0)
+                return null;
+
+            var entry = new RevocationCache.Entry<>(data, expirationOf(data, System.currentTimeMillis()));
+            persist(url, data);
+
+            return entry;
+        });
+    }
+
+    @Override
+    public DataAndUrl get(List<String> urlStrings) {
+        for (var url : urlStrings) {
+            try {
+                var data = get(url);
+                if (data != null)
+                    return new DataAndUrl(url, data);
+
+            } catch (DSSException e) {
+                LOGGER.debug("CRL download from {} failed: {}", url, e.getMessage());
+            }
+        }
+
+        throw new DSSException("Unable to download CRL from any of " + urlStrings);
+    }
+
+    @Override
+    public byte[] post(String url, byte[] content) {
+        return dataLoader.post(url, content);
+    }
+
+    @Override
+    public void setContentType(String contentType) {
+        dataLoader.setContentType(contentType);
+    }
+
+    public long getHits() {
+        return cache.getHits();
+    }
+
+    public long getMisses() {
+        return cache.getMisses();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    private long expirationOf(byte[] data, long downloadedAt) {
+        var fallback = downloadedAt + fallbackTimeToLiveMillis;
+        try {
+            var crl = (X509CRL) CertificateFactory.getInstance("X.509").generateCRL(new ByteArrayInputStream(data));
+            if (crl.getNextUpdate() != null)
+                return crl.getNextUpdate().getTime();
+
+        } catch (Exception e) {
+            LOGGER.debug("Unable to read CRL nextUpdate: {}", e.getMessage());
+        }
+
+        return fallback;
+    }
+
+    private RevocationCache.Entry<byte[]> readPersisted(String url) {
+        var directory = this.directory;
+        if (directory == null)
+            return null;
+
+        var file = fileOf(directory.toPath(), url);
+        if (!Files.isRegularFile(file))
+            return null;
+
+        try {
+            var data = Files.readAllBytes(file);
+            var expiresAt = expirationOf(data, Files.getLastModifiedTime(file).toMillis());
+            if (expiresAt <= System.currentTimeMillis()) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+
+            return new RevocationCache.Entry<>(data, expiresAt);
+
+        } catch (IOException e) {
+            LOGGER.warn("Unable to read cached CRL {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private void persist(String url, byte[] data) {
+        var directory = this.directory;
+        if (directory == null)
+            return;
+
+        try {
+            Files.createDirectories(directory.toPath());
+            var file = fileOf(directory.toPath(), url);
+            var temp = Files.createTempFile(directory.toPath(), "crl", ".tmp");
+            Files.write(temp, data);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } catch (IOException e) {
+            LOGGER.warn("Unable to persist CRL from {}: {}", url, e.getMessage());
+        }
+    }
+
+    private Object readResolve() {
+        var directory = this.directory;
+        return new CachingCRLDataLoader(dataLoader, Duration.ofMillis(fallbackTimeToLiveMillis),
+                directory == null ? null : directory.toPath());
+    }
+
+    private static Path fileOf(Path directory, String url) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            return directory.resolve(HexFormat.of().formatHex(digest) + ".crl");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
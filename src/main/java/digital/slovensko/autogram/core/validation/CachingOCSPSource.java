@@ -0,0 +1,96 @@
+package digital.slovensko.autogram.core.validation;
+
+import eu.europa.esig.dss.enumerations.RevocationOrigin;
+import eu.europa.esig.dss.model.DSSException;
+import eu.europa.esig.dss.model.x509.CertificateToken;
+import eu.europa.esig.dss.spi.DSSRevocationUtils;
+import eu.europa.esig.dss.spi.x509.revocation.ocsp.OCSPSource;
+import eu.europa.esig.dss.spi.x509.revocation.ocsp.OCSPToken;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.OCSPException;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * OCSP responses cached per certificate and issuer. A response is reused until its nextUpdate, a response without
+ * nextUpdate at most for the given time after its thisUpdate. Only the encoded response is cached, every call gets
+ * a new OCSPToken built from it, as DSS's own revocation caches do, because DSS mutates tokens during validation.
+ * The deserialized source starts with an empty cache.
+ */
+public class CachingOCSPSource implements OCSPSource {
+    private final OCSPSource ocspSource;
+    private final transient RevocationCache<CachedResponse> cache;
+    private final long maxAgeMillis;
+
+    public CachingOCSPSource(OCSPSource ocspSource, Duration maxAge) {
+        this.ocspSource = ocspSource;
+        this.cache = new RevocationCache<>(1024);
+        this.maxAgeMillis = maxAge.toMillis();
+    }
+
+    @Override
+    public OCSPToken getRevocationToken(CertificateToken certificateToken, CertificateToken issuerCertificateToken) {
+        var key = certificateToken.getDSSIdAsString() + ":" + issuerCertificateToken.getDSSIdAsString();
+
+        var response = cache.get(key, () -> {
+            var token = ocspSource.getRevocationToken(certificateToken, issuerCertificateToken);
+            if (token == null)
+                return null;
+
+            return new RevocationCache.Entry<>(new CachedResponse(token.getEncoded(), token.getSourceURL(),
+                    token.getExternalOrigin()), expirationOf(token));
+        });
+
+        if (response == null)
+            return null;
+
+        return response.toToken(certificateToken, issuerCertificateToken);
+    }
+
+    public long getHits() {
+        return cache.getHits();
+    }
+
+    public long getMisses() {
+        return cache.getMisses();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    private Object readResolve() {
+        return new CachingOCSPSource(ocspSource, Duration.ofMillis(maxAgeMillis));
+    }
+
+    private long expirationOf(OCSPToken token) {
+        var latest = System.currentTimeMillis() + maxAgeMillis;
+        if (token.getNextUpdate() != null)
+            return token.getNextUpdate().getTime();
+
+        if (token.getThisUpdate() != null)
+            return Math.min(latest, token.getThisUpdate().getTime() + maxAgeMillis);
+
+        return latest;
+    }
+
+    private record CachedResponse(byte[] encoded, String sourceUrl, RevocationOrigin origin) {
+        OCSPToken toToken(CertificateToken certificateToken, CertificateToken issuerCertificateToken) {
+            try {
+                var basicResponse = (BasicOCSPResp) new OCSPResp(encoded).getResponseObject();
+                var singleResponse = DSSRevocationUtils.getLatestSingleResponse(basicResponse, certificateToken,
+                        issuerCertificateToken);
+
+                var token = new OCSPToken(basicResponse, singleResponse, certificateToken, issuerCertificateToken);
+                token.setSourceURL(sourceUrl);
+                token.setExternalOrigin(origin);
+                return token;
+
+            } catch (IOException | OCSPException e) {
+                throw new DSSException("Unable to rebuild the cached OCSP response", e);
+            }
+        }
+    }
+}
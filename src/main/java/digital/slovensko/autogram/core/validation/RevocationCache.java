@@ -0,0 +1,99 @@
+package digital.slovensko.autogram.core.validation;
+
+import digital.slovensko.autogram.core.util.LruCache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Revocation data cache with per-key single-flight: concurrent misses on the same key wait for one load instead of
+ * all hitting the CA endpoint. Every entry carries its own expiration derived from the revocation data.
+ */
+public class RevocationCache<T> {
+    private final LruCache<String, Entry<T>> entries;
+    private final ConcurrentHashMap<String, CompletableFuture<Entry<T>>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public RevocationCache(int maxEntries) {
+        this.entries = new LruCache<>(maxEntries);
+    }
+
+    public RevocationCache(int maxEntries, long maxWeight, ToLongFunction<T> weigher) {
+        this.entries = new LruCache<>(maxEntries, maxWeight, entry -> weigher.applyAsLong(entry.value()));
+    }
+
+    public T get(String key, Supplier<Entry<T>> loader) {
+        var entry = entries.get(key);
+        if (entry != null && !entry.isExpired()) {
+            hits.incrementAndGet();
+            return entry.value();
+        }
+
+        misses.incrementAndGet();
+        var future = new CompletableFuture<Entry<T>>();
+        var running = inFlight.putIfAbsent(key, future);
+        if (running != null)
+            return valueOf(await(running));
+
+        try {
+            var loaded = loader.get();
+            if (loaded != null && !loaded.isExpired())
+                entries.put(key, loaded);
+            else
+                entries.remove(key);
+
+            future.complete(loaded);
+            return valueOf(loaded);
+
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    public void put(String key, Entry<T> entry) {
+        if (!entry.isExpired())
+            entries.put(key, entry);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    private static <T> Entry<T> await(CompletableFuture<Entry<T>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+
+            throw e;
+        }
+    }
+
+    private static <T> T valueOf(Entry<T> entry) {
+        return entry == null ? null : entry.value();
+    }
+
+    public record Entry<T>(T value, long expiresAt) {
+        boolean isExpired() {
+            return expiresAt <= System.currentTimeMillis();
+        }
+    }
+}
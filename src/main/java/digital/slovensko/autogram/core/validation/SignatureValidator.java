@@ -2,10 +2,13 @@ package digital.slovensko.autogram.core.validation;
 
 import digital.slovensko.autogram.core.CustomSynchronizationStrategy;
 import digital.slovensko.autogram.core.SigningJob;
+import digital.slovensko.autogram.core.util.DocumentFormat;
+import digital.slovensko.autogram.core.util.TemplatesCache;
 import digital.slovensko.autogram.core.util.XMLUtils;
 import eu.europa.esig.dss.enumerations.SignatureLevel;
 import eu.europa.esig.dss.model.DSSDocument;
 import eu.europa.esig.dss.model.DSSException;
+import eu.europa.esig.dss.model.tsl.TLInfo;
 import eu.europa.esig.dss.service.crl.OnlineCRLSource;
 import eu.europa.esig.dss.service.http.commons.CommonsDataLoader;
 import eu.europa.esig.dss.service.http.commons.FileCacheDataLoader;
@@ -14,9 +17,11 @@ import eu.europa.esig.dss.simplereport.SimpleReport;
 import eu.europa.esig.dss.spi.tsl.TrustedListsCertificateSource;
 import eu.europa.esig.dss.spi.x509.CertificateSource;
 import eu.europa.esig.dss.spi.x509.KeyStoreCertificateSource;
+import eu.europa.esig.dss.spi.x509.ListCertificateSource;
 import eu.europa.esig.dss.tsl.function.OfficialJournalSchemeInformationURI;
 import eu.europa.esig.dss.tsl.function.TLPredicateFactory;
 import eu.europa.esig.dss.tsl.job.TLValidationJob;
+import eu.europa.esig.dss.model.tsl.TLValidationJobSummary;
 import eu.europa.esig.dss.tsl.source.LOTLSource;
 import eu.europa.esig.dss.spi.validation.CertificateVerifier;
 import eu.europa.esig.dss.spi.validation.CommonCertificateVerifier;
@@ -36,46 +41,95 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.text.SimpleDateFormat;
+import java.time.Duration;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 import static digital.slovensko.autogram.core.util.DSSUtils.*;
 
 public class SignatureValidator {
     private static final String LOTL_URL = "https://ec.europa.eu/tools/lotl/eu-lotl.xml";
     private static final String OJ_URL = "https://eur-lex.europa.eu/legal-content/EN/TXT/?uri=uriserv:OJ.C_.2019.276.01.0001.01.ENG";
-    private CertificateVerifier verifier;
-    private TLValidationJob validationJob;
     private static final Logger LOGGER = LoggerFactory.getLogger(SignatureValidator.class);
+    private static final Duration DEFAULT_SNAPSHOT_MAX_AGE = Duration.ofDays(7);
+    private static volatile String simpleReportXslt;
+
+    // Validations only read the published snapshot, the lock serializes refreshes among themselves
+    private final AtomicReference<ValidationSnapshot> snapshot = new AtomicReference<>();
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private final AtomicLong snapshotVersion = new AtomicLong();
+    private final List<Consumer<TrustedListsDiff>> refreshListeners = new CopyOnWriteArrayList<>();
+    // Revocation data is shared by all snapshots and cached until its nextUpdate
+    private final CachingCRLDataLoader crlDataLoader = new CachingCRLDataLoader(new CommonsDataLoader(), Duration.ofHours(1), null);
+    private final OnlineCRLSource crlSource = new OnlineCRLSource(crlDataLoader);
+    private final CachingOCSPSource ocspSource = new CachingOCSPSource(new OnlineOCSPSource(), Duration.ofMinutes(5));
+    // Long-lived services are cached per verifier, this one survives refreshes and reads the current trusted lists
+    private final CertificateVerifier currentVerifier = createCurrentVerifier();
+    private TLValidationJob validationJob;
+    private Path snapshotFile;
+    private String trustedListsFingerprint;
 
     // Singleton
-    private static SignatureValidator instance;
+    private static final SignatureValidator instance = new SignatureValidator();
 
     private SignatureValidator() {
     }
 
-    public synchronized static SignatureValidator getInstance() {
-        if (instance == null)
-            instance = new SignatureValidator();
-
+    public static SignatureValidator getInstance() {
         return instance;
     }
 
-    private synchronized Reports validate(SignedDocumentValidator docValidator) {
-        docValidator.setCertificateVerifier(verifier);
+    private Reports validate(SignedDocumentValidator docValidator) {
+        docValidator.setCertificateVerifier(getVerifier());
 
         // TODO: do not print stack trace inside DSS
         return docValidator.validateDocument();
     }
 
-    public synchronized CertificateVerifier getVerifier() {
+    public CertificateVerifier getVerifier() {
+        var current = snapshot.get();
+        if (current == null)
+            return null;
+
+        return current.verifier();
+    }
+
+    /**
+     * Returns a verifier that stays the same across trusted lists refreshes and always uses the currently
+     * published trusted lists. Use it as a cache key instead of {@link #getVerifier()}, which changes with
+     * every refresh.
+     */
+    public CertificateVerifier getCurrentVerifier() {
+        return currentVerifier;
+    }
+
+    private CertificateVerifier createCurrentVerifier() {
+        var verifier = new CommonCertificateVerifier() {
+            @Override
+            public ListCertificateSource getTrustedCertSources() {
+                var current = snapshot.get();
+                if (current == null)
+                    return new ListCertificateSource();
+
+                return current.verifier().getTrustedCertSources();
+            }
+        };
+        verifier.setCrlSource(crlSource);
+        verifier.setOcspSource(ocspSource);
+
         return verifier;
     }
 
-    public synchronized ReportsAndValidator validate(DSSDocument document) {
+    public ReportsAndValidator validate(DSSDocument document) {
         var documentValidator = createDocumentValidator(document);
         if (documentValidator == null)
             return null;
@@ -91,15 +145,86 @@ public class SignatureValidator {
         executorService.scheduleAtFixedRate(() -> getInstance().refresh(), initialDelayMinutes, periodMinutes, java.util.concurrent.TimeUnit.MINUTES);
     }
 
-    public synchronized void refresh() {
-        validationJob.offlineRefresh();
+    public void refresh() {
+        refreshLock.lock();
+        try {
+            if (validationJob == null)
+                return;
+
+            // Synchronize into a fresh source so validations running on the current snapshot are not affected
+            var trustedListCertificateSource = new TrustedListsCertificateSource();
+            validationJob.setTrustedListCertificateSource(trustedListCertificateSource);
+            validationJob.offlineRefresh();
+
+            publishFresh(trustedListCertificateSource);
+        } finally {
+            refreshLock.unlock();
+        }
     }
 
-    public synchronized void initialize(ExecutorService executorService, List<String> tlCountries) {
+    public void initialize(ExecutorService executorService, List<String> tlCountries) {
+        refreshLock.lock();
+        try {
+            doInitialize(executorService, tlCountries);
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    public void initialize(ExecutorService executorService, List<String> tlCountries, Path snapshotFile) {
+        initialize(executorService, tlCountries, snapshotFile, DEFAULT_SNAPSHOT_MAX_AGE);
+    }
+
+    /**
+     * Starts serving validations from the trusted lists snapshot saved by a previous run and refreshes the trusted
+     * lists in the background. Without a usable snapshot, or with one older than snapshotMaxAge, it initializes
+     * synchronously like {@link #initialize}. Every later refresh saves the snapshot again.
+     */
+    public void initialize(ExecutorService executorService, List<String> tlCountries, Path snapshotFile,
+            Duration snapshotMaxAge) {
+        refreshLock.lock();
+        try {
+            this.snapshotFile = snapshotFile;
+
+            var loaded = TrustedListsSnapshotFile.load(snapshotFile, snapshotMaxAge);
+            if (loaded == null) {
+                doInitialize(executorService, tlCountries);
+                return;
+            }
+
+            validationJob = createValidationJob(executorService, tlCountries, new TrustedListsCertificateSource());
+            publish(loaded.source(), loaded.loadedTLs(), TrustedListsOrigin.SNAPSHOT);
+            LOGGER.debug("Signature validator started from trusted lists snapshot {}", snapshotFile);
+        } finally {
+            refreshLock.unlock();
+        }
+
+        Thread.ofVirtual().name("trusted-lists-refresh").start(() -> {
+            try {
+                refresh();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Background trusted lists refresh failed, still serving the snapshot", e);
+            }
+        });
+    }
+
+    private void doInitialize(ExecutorService executorService, List<String> tlCountries) {
         SimpleDateFormat formatter = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
         LOGGER.debug("Initializing signature validator at {}", formatter.format(new Date()));
 
-        validationJob = new TLValidationJob();
+        var trustedListCertificateSource = new TrustedListsCertificateSource();
+        validationJob = createValidationJob(executorService, tlCountries, trustedListCertificateSource);
+
+        LOGGER.debug("Starting signature validator offline refresh");
+        validationJob.offlineRefresh();
+        publishFresh(trustedListCertificateSource);
+
+        LOGGER.debug("Signature validator initialized at {}", formatter.format(new Date()));
+    }
+
+    private TLValidationJob createValidationJob(ExecutorService executorService, List<String> tlCountries,
+            TrustedListsCertificateSource trustedListCertificateSource) {
+        var validationJob = new TLValidationJob();
 
         var lotlSource = new LOTLSource();
         lotlSource.setCertificateSource(getJournalCertificateSource());
@@ -118,22 +243,111 @@ public class SignatureValidator {
         onlineFileLoader.setDataLoader(new CommonsDataLoader());
         validationJob.setOnlineDataLoader(onlineFileLoader);
 
-        var trustedListCertificateSource = new TrustedListsCertificateSource();
         validationJob.setTrustedListCertificateSource(trustedListCertificateSource);
         validationJob.setListOfTrustedListSources(lotlSource);
         validationJob.setSynchronizationStrategy(new CustomSynchronizationStrategy());
         validationJob.setExecutorService(executorService);
         validationJob.setDebug(false);
 
-        LOGGER.debug("Starting signature validator offline refresh");
-        validationJob.offlineRefresh();
+        return validationJob;
+    }
+
+    private void publishFresh(TrustedListsCertificateSource trustedListCertificateSource) {
+        var summary = validationJob.getSummary();
+        var loadedTLs = summary.getNumberOfProcessedTLs();
+        if (loadedTLs == 0 && getTrustedListsOrigin() == TrustedListsOrigin.SNAPSHOT) {
+            LOGGER.warn("Trusted lists refresh loaded no trusted lists, keeping the snapshot");
+            return;
+        }
 
-        verifier = new CommonCertificateVerifier();
+        // Every refresh loads all lists again and synchronizes their certificates into the new source, the
+        // fingerprint only avoids publishing that source and notifying listeners when no list changed
+        var fingerprint = fingerprintOf(summary);
+        if (getTrustedListsOrigin() == TrustedListsOrigin.FRESH && fingerprint.equals(trustedListsFingerprint)) {
+            LOGGER.debug("Trusted lists unchanged, keeping snapshot {}", getTrustedListsVersion());
+            return;
+        }
+
+        trustedListsFingerprint = fingerprint;
+        publish(trustedListCertificateSource, loadedTLs, TrustedListsOrigin.FRESH);
+
+        if (snapshotFile != null && loadedTLs > 0)
+            TrustedListsSnapshotFile.save(snapshotFile, trustedListCertificateSource, loadedTLs);
+    }
+
+    private void publish(TrustedListsCertificateSource trustedListCertificateSource, int loadedTLs, TrustedListsOrigin origin) {
+        var verifier = new CommonCertificateVerifier();
         verifier.setTrustedCertSources(trustedListCertificateSource);
-        verifier.setCrlSource(new OnlineCRLSource());
-        verifier.setOcspSource(new OnlineOCSPSource());
+        verifier.setCrlSource(crlSource);
+        verifier.setOcspSource(ocspSource);
 
-        LOGGER.debug("Signature validator initialized at {}", formatter.format(new Date()));
+        var previous = snapshot.get();
+        var diff = TrustedListsDiff.between(previous == null ? null : previous.trustedListsCertificateSource(), trustedListCertificateSource);
+        snapshot.set(new ValidationSnapshot(snapshotVersion.incrementAndGet(), verifier, trustedListCertificateSource, loadedTLs, origin));
+        LOGGER.debug("Published trusted lists with {} added and {} removed trust anchors", diff.added().size(), diff.removed().size());
+
+        for (var listener : refreshListeners)
+            listener.accept(diff);
+    }
+
+    // Identifies the content of every processed list, a new sequence number or validation result changes it
+    private static String fingerprintOf(TLValidationJobSummary summary) {
+        var fingerprint = new StringBuilder();
+        for (var lotl : summary.getLOTLInfos()) {
+            appendFingerprint(fingerprint, lotl);
+            for (var tl : lotl.getTLInfos())
+                appendFingerprint(fingerprint, tl);
+        }
+
+        for (var tl : summary.getOtherTLInfos())
+            appendFingerprint(fingerprint, tl);
+
+        return fingerprint.toString();
+    }
+
+    private static void appendFingerprint(StringBuilder fingerprint, TLInfo info) {
+        var parsing = info.getParsingCacheInfo();
+        var validation = info.getValidationCacheInfo();
+        fingerprint.append(info.getUrl())
+                .append('|').append(parsing.getSequenceNumber())
+                .append('|').append(parsing.getIssueDate() == null ? null : parsing.getIssueDate().getTime())
+                .append('|').append(validation.getIndication())
+                .append('\n');
+    }
+
+    // Listeners run after new trusted lists are published, on the refreshing thread. A refresh that finds no
+    // changed list publishes nothing and does not notify them.
+    public void addRefreshListener(Runnable listener) {
+        refreshListeners.add(diff -> listener.run());
+    }
+
+    public void addRefreshListener(Consumer<TrustedListsDiff> listener) {
+        refreshListeners.add(listener);
+    }
+
+    public void removeRefreshListener(Consumer<TrustedListsDiff> listener) {
+        refreshListeners.remove(listener);
+    }
+
+    // Persists downloaded CRLs into the directory, the CRLs already cached in memory and the statistics are kept
+    public void setRevocationCacheDirectory(Path directory) {
+        crlDataLoader.setDirectory(directory);
+    }
+
+    public long getRevocationCacheHits() {
+        return crlDataLoader.getHits() + ocspSource.getHits();
+    }
+
+    public long getRevocationCacheMisses() {
+        return crlDataLoader.getMisses() + ocspSource.getMisses();
+    }
+
+    public long getTrustedListsVersion() {
+        var current = snapshot.get();
+        if (current == null)
+            return 0;
+
+        return current.version();
     }
 
     private CertificateSource getJournalCertificateSource() throws AssertionError {
@@ -146,7 +360,7 @@ public class SignatureValidator {
         }
     }
 
-    public synchronized ValidationReports getSignatureValidationReport(SigningJob job) {
+    public ValidationReports getSignatureValidationReport(SigningJob job) {
         var documentValidator = createDocumentValidator(job.getDocument());
         if (documentValidator == null)
             return new ValidationReports(null, job);
@@ -159,11 +373,12 @@ public class SignatureValidator {
             var document = XMLUtils.getSecureDocumentBuilder().parse(new InputSource(new StringReader(signatureValidationReport.getXmlSimpleReport())));
             var xmlSource = new DOMSource(document);
 
-            var xsltFile = SignatureValidator.class.getResourceAsStream("simple-report-bootstrap4.xslt");
-            var xsltSource = new StreamSource(xsltFile);
+            var xslt = getSimpleReportXslt();
+            var templates = TemplatesCache.getInstance().getTemplates(xslt, false,
+                    () -> XMLUtils.getSecureTransformerFactory().newTemplates(new StreamSource(new StringReader(xslt))));
 
             var outputTarget = new StreamResult(new StringWriter());
-            var transformer = XMLUtils.getSecureTransformerFactory().newTransformer(xsltSource);
+            var transformer = templates.newTransformer();
             transformer.transform(xmlSource, outputTarget);
 
             var r = outputTarget.getWriter().toString().trim();
@@ -177,6 +392,18 @@ public class SignatureValidator {
         }
     }
 
+    private static String getSimpleReportXslt() throws IOException {
+        var xslt = simpleReportXslt;
+        if (xslt == null) {
+            try (var xsltFile = SignatureValidator.class.getResourceAsStream("simple-report-bootstrap4.xslt")) {
+                xslt = new String(xsltFile.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            simpleReportXslt = xslt;
+        }
+
+        return xslt;
+    }
+
     public static ValidationReports getSignatureCheckReport(SigningJob job) {
         var validator = createDocumentValidator(job.getDocument());
         if (validator == null)
@@ -187,7 +414,11 @@ public class SignatureValidator {
     }
 
     public static SimpleReport getSignedDocumentSimpleReport(DSSDocument document) {
-        var validator = createDocumentValidator(document);
+        return getSignedDocumentSimpleReport(document, DocumentFormat.detect(document));
+    }
+
+    public static SimpleReport getSignedDocumentSimpleReport(DSSDocument document, DocumentFormat format) {
+        var validator = createDocumentValidator(document, format);
         if (validator == null)
             return null;
 
@@ -206,16 +437,26 @@ public class SignatureValidator {
         return report.getSignatureFormat(report.getSignatureIdList().get(0));
     }
 
-    public synchronized boolean areTLsLoaded() {
+    public boolean areTLsLoaded() {
         // TODO: consider validation turned off as well
-        return validationJob.getSummary().getNumberOfProcessedTLs() > 0;
+        return loadedTLs() > 0;
     }
 
     public int loadedTLs() {
-        if (validationJob == null)
+        var current = snapshot.get();
+        if (current == null)
             return 0;
 
-        return validationJob.getSummary().getNumberOfProcessedTLs();
+        return current.loadedTLs();
+    }
+
+    // Null until trusted lists are loaded
+    public TrustedListsOrigin getTrustedListsOrigin() {
+        var current = snapshot.get();
+        if (current == null)
+            return null;
+
+        return current.origin();
     }
 
 }
@@ -3,14 +3,14 @@ package digital.slovensko.autogram.core.validation;
 import static digital.slovensko.autogram.core.AutogramMimeType.isXDC;
 import static digital.slovensko.autogram.core.AutogramMimeType.isXML;
 
-import java.security.cert.CertificateEncodingException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Base64;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.TreeSet;
 
 import javax.security.auth.x500.X500Principal;
 import javax.xml.crypto.dsig.CanonicalizationMethod;
@@ -22,12 +22,9 @@ import digital.slovensko.autogram.core.server.dto.CompareResponseBody;
 import digital.slovensko.autogram.core.server.dto.CompareResponseBody.DocumentMatch;
 import digital.slovensko.autogram.core.server.dto.CompareResponseBody.DocumentRef;
 import digital.slovensko.autogram.core.server.dto.CompareResponseBody.SignatureRef;
-import digital.slovensko.autogram.core.util.DSSUtils;
 import eu.europa.esig.dss.enumerations.DigestAlgorithm;
 import eu.europa.esig.dss.model.DSSDocument;
 import eu.europa.esig.dss.spi.signature.AdvancedSignature;
-import eu.europa.esig.dss.spi.validation.CommonCertificateVerifier;
-import eu.europa.esig.dss.validation.SignedDocumentValidator;
 import eu.europa.esig.dss.xml.utils.XMLCanonicalizer;
 import org.w3c.dom.Node;
 
@@ -44,58 +41,54 @@ public abstract class SignedVersionValidator {
 
     public static CompareResponseBody compare(List<DSSDocument> originalDocuments, DSSDocument signedDocument)
             throws DocumentNotSignedYetException {
-        var signedValidator = buildValidator(signedDocument);
-        if (signedValidator == null || signedValidator.getSignatures().isEmpty())
+        var signed = new AnalysedDocument(signedDocument);
+        if (!signed.isSigned())
             throw new DocumentNotSignedYetException();
 
-        var signedPayloads = extractPayloads(signedDocument);
-        var signedSignatures = signedValidator.getSignatures();
+        var signedPayloads = signed.getPayloads();
+        var signedSignatures = signed.getSignatures();
+        var signedSignatureIdentities = signed.getSignatureIdentities();
 
         var originalPayloads = new ArrayList<DSSDocument>();
         var originalSignatures = new ArrayList<AdvancedSignature>();
-        for (var original : originalDocuments) {
-            originalPayloads.addAll(extractPayloads(original));
-            originalSignatures.addAll(extractSignatures(original));
+        var originalSignatureIdentities = new ArrayList<String>();
+        for (var originalDocument : originalDocuments) {
+            var original = new AnalysedDocument(originalDocument);
+            originalPayloads.addAll(original.getPayloads());
+            originalSignatures.addAll(original.getSignatures());
+            originalSignatureIdentities.addAll(original.getSignatureIdentities());
         }
 
         var matched = new ArrayList<DocumentMatch>();
         var unmatchedOriginals = new ArrayList<DocumentRef>();
-        var remainingSigned = new ArrayList<>(signedPayloads);
+        var signedIndex = new PayloadIndex(signedPayloads);
         for (var original : originalPayloads) {
-            DSSDocument match = null;
-            for (var candidate : remainingSigned) {
-                if (contentMatches(original, candidate)) {
-                    match = candidate;
-                    break;
-                }
-            }
-
-            if (match != null) {
+            var match = signedIndex.take(PayloadDigest.of(original));
+            if (match != null)
                 matched.add(new DocumentMatch(original.getName(), match.getName()));
-                remainingSigned.remove(match);
-            } else {
+            else
                 unmatchedOriginals.add(toRef(original));
-            }
         }
 
-        var extraSignedDocuments = remainingSigned.stream().map(SignedVersionValidator::toRef).toList();
+        var extraSignedDocuments = signedIndex.remaining().stream().map(SignedVersionValidator::toRef).toList();
 
-        var originalSignatureIdentities = signatureIdentities(originalSignatures);
-        var signedSignatureIdentities = signatureIdentities(signedSignatures);
+        var originalIdentitySet = new HashSet<>(originalSignatureIdentities);
+        var signedIdentitySet = new HashSet<>(signedSignatureIdentities);
 
         var preservedSignatures = new ArrayList<SignatureRef>();
         var missingSignatures = new ArrayList<SignatureRef>();
-        for (var signature : originalSignatures) {
-            if (signedSignatureIdentities.contains(identityOf(signature)))
-                preservedSignatures.add(toRef(signature));
+        for (var i = 0; i < originalSignatures.size(); i++) {
+            if (signedIdentitySet.contains(originalSignatureIdentities.get(i)))
+                preservedSignatures.add(toRef(originalSignatures.get(i)));
             else
-                missingSignatures.add(toRef(signature));
+                missingSignatures.add(toRef(originalSignatures.get(i)));
         }
 
-        var newSignatures = signedSignatures.stream()
-                .filter(signature -> !originalSignatureIdentities.contains(identityOf(signature)))
-                .map(SignedVersionValidator::toRef)
-                .toList();
+        var newSignatures = new ArrayList<SignatureRef>();
+        for (var i = 0; i < signedSignatures.size(); i++) {
+            if (!originalIdentitySet.contains(signedSignatureIdentities.get(i)))
+                newSignatures.add(toRef(signedSignatures.get(i)));
+        }
 
         var contentMatches = unmatchedOriginals.isEmpty() && !originalPayloads.isEmpty();
         var allSignaturesPreserved = missingSignatures.isEmpty();
@@ -111,54 +104,108 @@ public abstract class SignedVersionValidator {
                 newSignatures);
     }
 
-    private static SignedDocumentValidator buildValidator(DSSDocument document) {
-        var validator = DSSUtils.createDocumentValidator(document);
-        if (validator == null)
-            return null;
+    /**
+     * Digests deciding whether two payloads have the same content. Two XML-like payloads match when their canonical
+     * digests match, any other pair when their bytes do. A null xmlDigest means the XML could not be canonicalized.
+     */
+    private record PayloadDigest(DSSDocument document, boolean xmlLike, String xmlDigest, String binaryDigest) {
+        static PayloadDigest of(DSSDocument document) {
+            var xmlLike = isXmlLike(document);
+            String xmlDigest = null;
+            if (xmlLike) {
+                try {
+                    xmlDigest = canonicalXmlDigest(comparableXml(document));
+                } catch (Exception e) {
+                    // such document only matches by bytes with a non-XML document
+                }
+            }
+
+            var binaryDigest = Base64.getEncoder().encodeToString(
+                    eu.europa.esig.dss.spi.DSSUtils.digest(DIGEST_ALGORITHM, readBytes(document)));
 
-        validator.setCertificateVerifier(new CommonCertificateVerifier());
-        return validator;
+            return new PayloadDigest(document, xmlLike, xmlDigest, binaryDigest);
+        }
     }
 
     /**
-     * Returns the payload documents of a file. For an unsigned file the file itself is the payload.
-     * For a signed file the documents covered by its signatures are returned.
+     * Signed payloads indexed by their digests. Taking a match returns the first remaining payload in the original
+     * order that matches, the same one a linear scan over the remaining payloads would find.
      */
-    private static List<DSSDocument> extractPayloads(DSSDocument document) {
-        var validator = buildValidator(document);
-        if (validator == null || validator.getSignatures().isEmpty())
-            return List.of(document);
-
-        var payloads = new ArrayList<DSSDocument>();
-        var seenNames = new HashSet<String>();
-        for (var signature : validator.getSignatures()) {
-            for (var original : validator.getOriginalDocuments(signature.getId())) {
-                if (seenNames.add(original.getName()))
-                    payloads.add(original);
+    private static class PayloadIndex {
+        private final List<PayloadDigest> payloads;
+        private final boolean[] taken;
+        private final Map<String, TreeSet<Integer>> byBinaryDigest = new HashMap<>();
+        private final Map<String, TreeSet<Integer>> byXmlDigest = new HashMap<>();
+        private final Map<String, TreeSet<Integer>> nonXmlByBinaryDigest = new HashMap<>();
+
+        PayloadIndex(List<DSSDocument> documents) {
+            payloads = documents.stream().map(PayloadDigest::of).toList();
+            taken = new boolean[payloads.size()];
+
+            for (var i = 0; i < payloads.size(); i++) {
+                var payload = payloads.get(i);
+                add(byBinaryDigest, payload.binaryDigest(), i);
+                if (!payload.xmlLike())
+                    add(nonXmlByBinaryDigest, payload.binaryDigest(), i);
+                else if (payload.xmlDigest() != null)
+                    add(byXmlDigest, payload.xmlDigest(), i);
             }
         }
 
-        return payloads.isEmpty() ? List.of(document) : payloads;
-    }
+        DSSDocument take(PayloadDigest original) {
+            Integer index;
+            if (!original.xmlLike()) {
+                index = first(byBinaryDigest, original.binaryDigest());
+            } else {
+                var xmlMatch = first(byXmlDigest, original.xmlDigest());
+                var binaryMatch = first(nonXmlByBinaryDigest, original.binaryDigest());
+                index = xmlMatch == null ? binaryMatch : binaryMatch == null ? xmlMatch : Math.min(xmlMatch, binaryMatch);
+            }
 
-    private static List<AdvancedSignature> extractSignatures(DSSDocument document) {
-        var validator = buildValidator(document);
-        if (validator == null)
-            return List.of();
+            if (index == null)
+                return null;
 
-        return validator.getSignatures();
-    }
+            var payload = payloads.get(index);
+            taken[index] = true;
+            remove(byBinaryDigest, payload.binaryDigest(), index);
+            remove(nonXmlByBinaryDigest, payload.binaryDigest(), index);
+            remove(byXmlDigest, payload.xmlDigest(), index);
 
-    private static boolean contentMatches(DSSDocument original, DSSDocument signed) {
-        if (isXmlLike(original) && isXmlLike(signed)) {
-            try {
-                return canonicalXmlDigest(comparableXml(original)).equals(canonicalXmlDigest(comparableXml(signed)));
-            } catch (Exception e) {
-                return false;
-            }
+            return payload.document();
+        }
+
+        List<DSSDocument> remaining() {
+            var remaining = new ArrayList<DSSDocument>();
+            for (var i = 0; i < payloads.size(); i++)
+                if (!taken[i])
+                    remaining.add(payloads.get(i).document());
+
+            return remaining;
+        }
+
+        private static void add(Map<String, TreeSet<Integer>> index, String digest, int position) {
+            index.computeIfAbsent(digest, key -> new TreeSet<>()).add(position);
+        }
+
+        private static void remove(Map<String, TreeSet<Integer>> index, String digest, int position) {
+            if (digest == null)
+                return;
+
+            var positions = index.get(digest);
+            if (positions != null)
+                positions.remove(position);
         }
 
-        return Arrays.equals(readBytes(original), readBytes(signed));
+        private static Integer first(Map<String, TreeSet<Integer>> index, String digest) {
+            if (digest == null)
+                return null;
+
+            var positions = index.get(digest);
+            if (positions == null || positions.isEmpty())
+                return null;
+
+            return positions.first();
+        }
     }
 
     private static Node comparableXml(DSSDocument document) {
@@ -211,29 +258,6 @@ public abstract class SignedVersionValidator {
         }
     }
 
-    private static Set<String> signatureIdentities(List<AdvancedSignature> signatures) {
-        var identities = new HashSet<String>();
-        for (var signature : signatures)
-            identities.add(identityOf(signature));
-
-        return identities;
-    }
-
-    private static String identityOf(AdvancedSignature signature) {
-        var certificateToken = signature.getSigningCertificateToken();
-        if (certificateToken != null) {
-            try {
-                var certificate = Base64.getEncoder().encodeToString(certificateToken.getCertificate().getEncoded());
-                var signingTime = signature.getSigningTime() != null ? signature.getSigningTime().getTime() : 0L;
-                return "cert:" + certificate + "|time:" + signingTime;
-            } catch (CertificateEncodingException e) {
-                // fall through to id-based identity
-            }
-        }
-
-        return "id:" + signature.getId();
-    }
-
     private static DocumentRef toRef(DSSDocument document) {
         var mimeType = document.getMimeType() != null ? document.getMimeType().getMimeTypeString() : null;
         return new DocumentRef(document.getName(), mimeType);
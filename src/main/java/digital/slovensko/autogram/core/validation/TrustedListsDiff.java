@@ -0,0 +1,39 @@
+package digital.slovensko.autogram.core.validation;
+
+import eu.europa.esig.dss.model.x509.CertificateToken;
+import eu.europa.esig.dss.spi.tsl.TrustedListsCertificateSource;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trust anchors added and removed by a trusted lists refresh. Both lists are empty when only trust service metadata
+ * of existing anchors changed.
+ */
+public record TrustedListsDiff(List<CertificateToken> added, List<CertificateToken> removed) {
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty();
+    }
+
+    static TrustedListsDiff between(TrustedListsCertificateSource previous, TrustedListsCertificateSource current) {
+        var before = anchorsOf(previous);
+        var after = anchorsOf(current);
+
+        var added = after.entrySet().stream().filter(e -> !before.containsKey(e.getKey())).map(Map.Entry::getValue).toList();
+        var removed = before.entrySet().stream().filter(e -> !after.containsKey(e.getKey())).map(Map.Entry::getValue).toList();
+
+        return new TrustedListsDiff(added, removed);
+    }
+
+    private static Map<String, CertificateToken> anchorsOf(TrustedListsCertificateSource source) {
+        var anchors = new LinkedHashMap<String, CertificateToken>();
+        if (source == null)
+            return anchors;
+
+        for (var certificate : source.getCertificates())
+            anchors.put(certificate.getDSSIdAsString(), certificate);
+
+        return anchors;
+    }
+}
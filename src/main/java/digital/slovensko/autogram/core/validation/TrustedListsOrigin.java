@@ -0,0 +1,8 @@
+package digital.slovensko.autogram.core.validation;
+
+public enum TrustedListsOrigin {
+    // Restored from the snapshot saved by a previous run, not yet refreshed
+    SNAPSHOT,
+    // Validated in this run
+    FRESH
+}
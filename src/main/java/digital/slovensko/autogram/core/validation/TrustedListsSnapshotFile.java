@@ -0,0 +1,401 @@
+package digital.slovensko.autogram.core.validation;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import eu.europa.esig.dss.enumerations.Indication;
+import eu.europa.esig.dss.enumerations.KeyUsageBit;
+import eu.europa.esig.dss.enumerations.MatchingCriteriaIndicator;
+import eu.europa.esig.dss.enumerations.SubIndication;
+import eu.europa.esig.dss.model.DSSException;
+import eu.europa.esig.dss.model.timedependent.TimeDependentValues;
+import eu.europa.esig.dss.model.tsl.CertSubjectDNAttributeCondition;
+import eu.europa.esig.dss.model.tsl.CompositeCondition;
+import eu.europa.esig.dss.model.tsl.Condition;
+import eu.europa.esig.dss.model.tsl.ConditionForQualifiers;
+import eu.europa.esig.dss.model.tsl.ExtendedKeyUsageCondition;
+import eu.europa.esig.dss.model.tsl.KeyUsageCondition;
+import eu.europa.esig.dss.model.tsl.LOTLInfo;
+import eu.europa.esig.dss.model.tsl.PolicyIdCondition;
+import eu.europa.esig.dss.model.tsl.QCStatementCondition;
+import eu.europa.esig.dss.model.tsl.TLInfo;
+import eu.europa.esig.dss.model.tsl.TrustProperties;
+import eu.europa.esig.dss.model.tsl.TrustServiceProvider;
+import eu.europa.esig.dss.model.tsl.TrustServiceStatusAndInformationExtensions;
+import eu.europa.esig.dss.model.tsl.builder.TrustServiceProviderBuilder;
+import eu.europa.esig.dss.model.x509.CertificateToken;
+import eu.europa.esig.dss.spi.DSSUtils;
+import eu.europa.esig.dss.spi.tsl.TrustedListsCertificateSource;
+import eu.europa.esig.dss.tsl.dto.DownloadCacheDTO;
+import eu.europa.esig.dss.tsl.dto.ParsingCacheDTO;
+import eu.europa.esig.dss.tsl.dto.ValidationCacheDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Trusted certificates together with their trust service metadata as validated by the last successful refresh.
+ * Saved after every refresh so the next start can serve validations before the trusted lists are downloaded again.
+ *
+ * <p>The file is a header line with the format version and the SHA-256 digest of the rest, followed by JSON with the
+ * creation time, the DER encoded certificates and the trust service metadata DSS needs to qualify signatures.
+ * Snapshots that are damaged, too large or older than the allowed age are not loaded.</p>
+ *
+ * <p>The digest only detects damage, anyone who can write the file can also recompute it. A loaded snapshot decides
+ * which certificates are trusted, so the file is trusted exactly as far as the account running the application:
+ * it is created readable and writable by its owner only, and on POSIX file systems a snapshot that is not owned by
+ * the current user or that the group or others may write is not loaded. Elsewhere the snapshot directory is assumed
+ * to be writable only by the current user, as the user's profile directory is.</p>
+ */
+abstract class TrustedListsSnapshotFile {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrustedListsSnapshotFile.class);
+    private static final String HEADER = "autogram-trusted-lists-snapshot";
+    private static final int FORMAT_VERSION = 2;
+    private static final long MAX_FILE_SIZE = 64 * 1024 * 1024;
+    private static final Gson GSON = new Gson();
+    private static final Set<PosixFilePermission> OWNER_ONLY_FILE = PosixFilePermissions.fromString("rw-------");
+    private static final Set<PosixFilePermission> OWNER_ONLY_DIRECTORY = PosixFilePermissions.fromString("rwx------");
+
+    record Loaded(TrustedListsCertificateSource source, int loadedTLs) {
+    }
+
+    static void save(Path file, TrustedListsCertificateSource source, int loadedTLs) {
+        try {
+            var certificates = new ArrayList<AnchorJson>();
+            for (var certificate : source.getCertificates()) {
+                var trustServices = new ArrayList<TrustJson>();
+                for (var trustProperties : source.getTrustServices(certificate))
+                    trustServices.add(TrustJson.of(trustProperties));
+
+                certificates.add(new AnchorJson(Base64.getEncoder().encodeToString(certificate.getEncoded()), trustServices));
+            }
+
+            var payload = GSON.toJson(new SnapshotJson(System.currentTimeMillis(), loadedTLs, certificates))
+                    .getBytes(StandardCharsets.UTF_8);
+            var header = (HEADER + " " + FORMAT_VERSION + " " + sha256(payload) + "\n").getBytes(StandardCharsets.US_ASCII);
+
+            var directory = file.toAbsolutePath().getParent();
+            var posix = isPosix(directory);
+            if (posix)
+                Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY_DIRECTORY));
+            else
+                Files.createDirectories(directory);
+
+            var temp = posix
+                    ? Files.createTempFile(directory, "tl-snapshot", ".tmp", PosixFilePermissions.asFileAttribute(OWNER_ONLY_FILE))
+                    : Files.createTempFile(directory, "tl-snapshot", ".tmp");
+            try {
+                try (var out = Files.newOutputStream(temp)) {
+                    out.write(header);
+                    out.write(payload);
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.warn("Unable to save trusted lists snapshot to {}: {}", file, e.getMessage());
+        }
+    }
+
+    static Loaded load(Path file, Duration maxAge) {
+        if (file == null || !Files.isRegularFile(file))
+            return null;
+
+        try {
+            if (Files.size(file) > MAX_FILE_SIZE)
+                throw new IOException("snapshot is too large");
+
+            if (isPosix(file))
+                checkOwnerOnlyWritable(file);
+
+            var content = Files.readAllBytes(file);
+            var headerEnd = indexOf(content, (byte) '\n');
+            if (headerEnd < 0)
+                throw new IOException("missing header");
+
+            var header = new String(content, 0, headerEnd, StandardCharsets.US_ASCII).split(" ");
+            if (header.length != 3 || !header[0].equals(HEADER) || !header[1].equals(String.valueOf(FORMAT_VERSION)))
+                throw new IOException("unsupported format");
+
+            var payload = Arrays.copyOfRange(content, headerEnd + 1, content.length);
+            if (!sha256(payload).equals(header[2]))
+                throw new IOException("digest mismatch");
+
+            var snapshot = GSON.fromJson(new String(payload, StandardCharsets.UTF_8), SnapshotJson.class);
+            var age = System.currentTimeMillis() - snapshot.createdAt();
+            if (age < 0 || age > maxAge.toMillis()) {
+                LOGGER.debug("Trusted lists snapshot {} is {} ms old, not loading it", file, age);
+                return null;
+            }
+
+            var trustProperties = new HashMap<CertificateToken, List<TrustProperties>>();
+            for (var anchor : snapshot.certificates()) {
+                var certificate = DSSUtils.loadCertificate(Base64.getDecoder().decode(anchor.certificate()));
+                var trustServices = new ArrayList<TrustProperties>();
+                for (var trust : anchor.trustServices())
+                    trustServices.add(trust.toTrustProperties());
+
+                trustProperties.put(certificate, trustServices);
+            }
+
+            var source = new TrustedListsCertificateSource();
+            source.setTrustPropertiesByCertificates(trustProperties);
+
+            return new Loaded(source, snapshot.loadedTLs());
+
+        } catch (IOException | JsonParseException | DSSException | IllegalArgumentException | NullPointerException e) {
+            LOGGER.warn("Unable to load trusted lists snapshot from {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean isPosix(Path path) {
+        return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+
+    private static void checkOwnerOnlyWritable(Path file) throws IOException {
+        var permissions = Files.getPosixFilePermissions(file);
+        if (permissions.contains(PosixFilePermission.GROUP_WRITE) || permissions.contains(PosixFilePermission.OTHERS_WRITE))
+            throw new IOException("snapshot is writable by other users");
+
+        var currentUser = file.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        if (!Files.getOwner(file).equals(currentUser))
+            throw new IOException("snapshot is not owned by the current user");
+    }
+
+    private static int indexOf(byte[] content, byte value) {
+        for (var i = 0; i < content.length; i++)
+            if (content[i] == value)
+                return i;
+
+        return -1;
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Long timeOf(Date date) {
+        return date == null ? null : date.getTime();
+    }
+
+    private static Date dateOf(Long time) {
+        return time == null ? null : new Date(time);
+    }
+
+    private record SnapshotJson(long createdAt, int loadedTLs, List<AnchorJson> certificates) {
+    }
+
+    private record AnchorJson(String certificate, List<TrustJson> trustServices) {
+    }
+
+    private record TrustJson(TrustedListJson lotl, TrustedListJson tl, ProviderJson provider,
+                             List<ServiceJson> services) {
+        static TrustJson of(TrustProperties trustProperties) {
+            var services = new ArrayList<ServiceJson>();
+            for (var service : trustProperties.getTrustService().getList())
+                services.add(ServiceJson.of(service));
+
+            return new TrustJson(TrustedListJson.of(trustProperties.getLOTLInfo()),
+                    TrustedListJson.of(trustProperties.getTLInfo()),
+                    ProviderJson.of(trustProperties.getTrustServiceProvider()), services);
+        }
+
+        TrustProperties toTrustProperties() {
+            var values = new ArrayList<TrustServiceStatusAndInformationExtensions>();
+            for (var service : services)
+                values.add(service.toStatus());
+
+            var tlInfo = tl.toTLInfo();
+            var trustService = new TimeDependentValues<>(values);
+            if (lotl == null)
+                return new TrustProperties(tlInfo, provider.toProvider(), trustService);
+
+            return new TrustProperties(lotl.toLOTLInfo(), tlInfo, provider.toProvider(), trustService);
+        }
+    }
+
+    private record TrustedListJson(String url, String territory, Integer sequenceNumber, Integer version,
+                                   Long issueDate, Long nextUpdateDate, String indication, String subIndication) {
+        static TrustedListJson of(TLInfo info) {
+            if (info == null)
+                return null;
+
+            var parsing = info.getParsingCacheInfo();
+            var validation = info.getValidationCacheInfo();
+            return new TrustedListJson(info.getUrl(), parsing.getTerritory(), parsing.getSequenceNumber(),
+                    parsing.getVersion(), timeOf(parsing.getIssueDate()), timeOf(parsing.getNextUpdateDate()),
+                    validation.getIndication() == null ? null : validation.getIndication().name(),
+                    validation.getSubIndication() == null ? null : validation.getSubIndication().name());
+        }
+
+        TLInfo toTLInfo() {
+            return new TLInfo(new DownloadCacheDTO(), toParsingCache(), toValidationCache(), url);
+        }
+
+        LOTLInfo toLOTLInfo() {
+            return new LOTLInfo(new DownloadCacheDTO(), toParsingCache(), toValidationCache(), url);
+        }
+
+        private ParsingCacheDTO toParsingCache() {
+            var parsing = new ParsingCacheDTO();
+            parsing.setTerritory(territory);
+            parsing.setSequenceNumber(sequenceNumber);
+            parsing.setVersion(version);
+            parsing.setIssueDate(dateOf(issueDate));
+            parsing.setNextUpdateDate(dateOf(nextUpdateDate));
+            return parsing;
+        }
+
+        private ValidationCacheDTO toValidationCache() {
+            var validation = new ValidationCacheDTO();
+            if (indication != null)
+                validation.setIndication(Indication.valueOf(indication));
+
+            if (subIndication != null)
+                validation.setSubIndication(SubIndication.valueOf(subIndication));
+
+            return validation;
+        }
+    }
+
+    private record ProviderJson(Map<String, List<String>> names, Map<String, List<String>> tradeNames,
+                                List<String> registrationIdentifiers, String territory) {
+        static ProviderJson of(TrustServiceProvider provider) {
+            return new ProviderJson(provider.getNames(), provider.getTradeNames(),
+                    provider.getRegistrationIdentifiers(), provider.getTerritory());
+        }
+
+        TrustServiceProvider toProvider() {
+            return new TrustServiceProviderBuilder()
+                    .setNames(names)
+                    .setTradeNames(tradeNames)
+                    .setRegistrationIdentifiers(registrationIdentifiers)
+                    .setTerritory(territory)
+                    .build();
+        }
+    }
+
+    private record ServiceJson(Map<String, List<String>> names, String type, String status,
+                               List<QualifiersJson> conditionsForQualifiers, List<String> additionalServiceInfoUris,
+                               List<String> serviceSupplyPoints, Long expiredCertsRevocationInfo, Long startDate,
+                               Long endDate) {
+        static ServiceJson of(TrustServiceStatusAndInformationExtensions service) {
+            var qualifiers = new ArrayList<QualifiersJson>();
+            if (service.getConditionsForQualifiers() != null)
+                for (var conditionForQualifiers : service.getConditionsForQualifiers())
+                    qualifiers.add(new QualifiersJson(conditionForQualifiers.getQualifiers(),
+                            ConditionJson.of(conditionForQualifiers.getCondition())));
+
+            return new ServiceJson(service.getNames(), service.getType(), service.getStatus(), qualifiers,
+                    service.getAdditionalServiceInfoUris(), service.getServiceSupplyPoints(),
+                    timeOf(service.getExpiredCertsRevocationInfo()), timeOf(service.getStartDate()),
+                    timeOf(service.getEndDate()));
+        }
+
+        TrustServiceStatusAndInformationExtensions toStatus() {
+            var qualifiers = new ArrayList<ConditionForQualifiers>();
+            for (var conditionForQualifiers : conditionsForQualifiers)
+                qualifiers.add(new ConditionForQualifiers(conditionForQualifiers.condition().toCondition(),
+                        conditionForQualifiers.qualifiers()));
+
+            return new TrustServiceStatusAndInformationExtensions.TrustServiceStatusAndInformationExtensionsBuilder()
+                    .setNames(names)
+                    .setType(type)
+                    .setStatus(status)
+                    .setConditionsForQualifiers(qualifiers)
+                    .setAdditionalServiceInfoUris(additionalServiceInfoUris)
+                    .setServiceSupplyPoints(serviceSupplyPoints)
+                    .setExpiredCertsRevocationInfo(dateOf(expiredCertsRevocationInfo))
+                    .setStartDate(dateOf(startDate))
+                    .setEndDate(dateOf(endDate))
+                    .build();
+        }
+    }
+
+    private record QualifiersJson(List<String> qualifiers, ConditionJson condition) {
+    }
+
+    // One record for all condition types, only the fields of the given type are set
+    private record ConditionJson(String type, String matchingCriteria, List<ConditionJson> children,
+                                 String keyUsageBit, Boolean value, String oid, List<String> oids,
+                                 String statementType, String legislation) {
+        static ConditionJson of(Condition condition) {
+            if (condition instanceof CompositeCondition composite) {
+                var children = new ArrayList<ConditionJson>();
+                for (var child : composite.getChildren())
+                    children.add(of(child));
+
+                return new ConditionJson("composite", composite.getMatchingCriteriaIndicator().name(), children,
+                        null, null, null, null, null, null);
+            }
+
+            if (condition instanceof KeyUsageCondition keyUsage)
+                return new ConditionJson("keyUsage", null, null, keyUsage.getBit().name(), keyUsage.getValue(),
+                        null, null, null, null);
+
+            if (condition instanceof PolicyIdCondition policyId)
+                return new ConditionJson("policyId", null, null, null, null, policyId.getPolicyOid(), null, null,
+                        null);
+
+            if (condition instanceof CertSubjectDNAttributeCondition subjectDN)
+                return new ConditionJson("certSubjectDNAttribute", null, null, null, null, null,
+                        subjectDN.getAttributeOids(), null, null);
+
+            if (condition instanceof ExtendedKeyUsageCondition extendedKeyUsage)
+                return new ConditionJson("extendedKeyUsage", null, null, null, null, null,
+                        extendedKeyUsage.getExtendedKeyUsageOids(), null, null);
+
+            if (condition instanceof QCStatementCondition qcStatement)
+                return new ConditionJson("qcStatement", null, null, null, null, qcStatement.getOid(), null,
+                        qcStatement.getType(), qcStatement.getLegislation());
+
+            // Leaving a condition out would change how signatures are qualified, so no snapshot is better
+            throw new IllegalArgumentException("Unsupported trust service condition " + condition.getClass().getName());
+        }
+
+        Condition toCondition() {
+            return switch (type) {
+                case "composite" -> {
+                    var composite = new CompositeCondition(MatchingCriteriaIndicator.valueOf(matchingCriteria));
+                    for (var child : children)
+                        composite.addChild(child.toCondition());
+
+                    yield composite;
+                }
+                case "keyUsage" -> new KeyUsageCondition(KeyUsageBit.valueOf(keyUsageBit), value);
+                case "policyId" -> new PolicyIdCondition(oid);
+                case "certSubjectDNAttribute" -> new CertSubjectDNAttributeCondition(oids);
+                case "extendedKeyUsage" -> new ExtendedKeyUsageCondition(oids);
+                case "qcStatement" -> new QCStatementCondition(oid, statementType, legislation);
+                default -> throw new IllegalArgumentException("Unsupported trust service condition " + type);
+            };
+        }
+    }
+}
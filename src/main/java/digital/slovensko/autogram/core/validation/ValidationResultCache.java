@@ -0,0 +1,131 @@
+package digital.slovensko.autogram.core.validation;
+
+import digital.slovensko.autogram.core.server.dto.ValidationResponseBody;
+import digital.slovensko.autogram.core.util.LruCache;
+import eu.europa.esig.dss.diagnostic.RevocationWrapper;
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.enumerations.Indication;
+import eu.europa.esig.dss.enumerations.SubIndication;
+import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.simplereport.SimpleReport;
+import eu.europa.esig.dss.validation.reports.Reports;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Validation results keyed by the document content and the trusted lists they were validated against. An entry
+ * is kept at most until the earliest nextUpdate of the revocation data used, so a cached result never relies on
+ * revocation information that a fresh validation would refetch. Results that are indeterminate because revocation
+ * or timestamp data was not available are not cached at all. Cleared whenever new trusted lists are loaded, until
+ * the cache is closed.
+ */
+public class ValidationResultCache implements AutoCloseable {
+    // Sub-indications that may resolve on the next validation once OCSP, CRL or timestamp data becomes available
+    private static final Set<SubIndication> TRANSIENT_SUB_INDICATIONS = EnumSet.of(SubIndication.TRY_LATER,
+            SubIndication.NO_POE, SubIndication.OUT_OF_BOUNDS_NO_POE, SubIndication.OUT_OF_BOUNDS_NOT_REVOKED,
+            SubIndication.REVOKED_NO_POE, SubIndication.REVOKED_CA_NO_POE,
+            SubIndication.CERTIFICATE_CHAIN_GENERAL_FAILURE);
+
+    private final LruCache<String, CachedResult> results;
+    private final long maxTimeToLiveMillis;
+    private final Consumer<TrustedListsDiff> refreshListener;
+
+    public ValidationResultCache(int maxEntries, Duration maxTimeToLive) {
+        this.results = new LruCache<>(maxEntries);
+        this.maxTimeToLiveMillis = maxTimeToLive.toMillis();
+        this.refreshListener = diff -> results.clear();
+
+        SignatureValidator.getInstance().addRefreshListener(refreshListener);
+    }
+
+    public String keyOf(DSSDocument document) {
+        var digest = HexFormat.of().formatHex(document.getDigestValue(DigestAlgorithm.SHA256));
+
+        return digest + ":" + SignatureValidator.getInstance().getTrustedListsVersion();
+    }
+
+    public ValidationResponseBody get(String key) {
+        var result = results.get(key);
+        if (result == null)
+            return null;
+
+        if (result.expiresAt() < System.currentTimeMillis()) {
+            results.remove(key);
+            return null;
+        }
+
+        return result.body();
+    }
+
+    public void put(String key, ValidationResponseBody body, Reports reports) {
+        if (dependsOnUnavailableData(reports.getSimpleReport()))
+            return;
+
+        var nextUpdates = reports.getDiagnosticData().getAllRevocationData().stream()
+                .map(RevocationWrapper::getNextUpdate)
+                .toList();
+
+        put(key, body, nextUpdates);
+    }
+
+    void put(String key, ValidationResponseBody body, List<Date> revocationNextUpdates) {
+        var now = System.currentTimeMillis();
+        var expiresAt = now + maxTimeToLiveMillis;
+        for (var nextUpdate : revocationNextUpdates)
+            if (nextUpdate != null)
+                expiresAt = Math.min(expiresAt, nextUpdate.getTime());
+
+        if (expiresAt <= now)
+            return;
+
+        results.put(key, new CachedResult(body, expiresAt));
+    }
+
+    static boolean dependsOnUnavailableData(SimpleReport simpleReport) {
+        var tokenIds = new ArrayList<>(simpleReport.getSignatureIdList());
+        tokenIds.addAll(simpleReport.getTimestampIdList());
+        for (var tokenId : tokenIds)
+            if (isTransient(simpleReport.getIndication(tokenId), simpleReport.getSubIndication(tokenId)))
+                return true;
+
+        for (var signatureId : simpleReport.getSignatureIdList())
+            for (var timestamp : simpleReport.getSignatureTimestamps(signatureId))
+                if (isTransient(timestamp.getIndication(), timestamp.getSubIndication()))
+                    return true;
+
+        return false;
+    }
+
+    static boolean isTransient(Indication indication, SubIndication subIndication) {
+        return indication == Indication.INDETERMINATE && TRANSIENT_SUB_INDICATIONS.contains(subIndication);
+    }
+
+    public long getHits() {
+        return results.getHits();
+    }
+
+    public long getMisses() {
+        return results.getMisses();
+    }
+
+    public void clear() {
+        results.clear();
+    }
+
+    // Stops listening for trusted lists refreshes, a cache that is no longer used would be kept reachable otherwise
+    @Override
+    public void close() {
+        SignatureValidator.getInstance().removeRefreshListener(refreshListener);
+        results.clear();
+    }
+
+    private record CachedResult(ValidationResponseBody body, long expiresAt) {
+    }
+}
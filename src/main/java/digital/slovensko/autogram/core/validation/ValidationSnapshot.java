@@ -0,0 +1,12 @@
+package digital.slovensko.autogram.core.validation;
+
+import eu.europa.esig.dss.spi.tsl.TrustedListsCertificateSource;
+import eu.europa.esig.dss.spi.validation.CertificateVerifier;
+
+/**
+ * Immutable view of the trusted lists and the verifier built on top of them. A snapshot is never modified after
+ * it is published, refresh builds a new one with a higher version and swaps it in.
+ */
+record ValidationSnapshot(long version, CertificateVerifier verifier, TrustedListsCertificateSource trustedListsCertificateSource, int loadedTLs,
+        TrustedListsOrigin origin) {
+}
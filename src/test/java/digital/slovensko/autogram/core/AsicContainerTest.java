@@ -4,11 +4,20 @@ import digital.slovensko.autogram.core.errors.MultipleOriginalDocumentsFoundExce
 import digital.slovensko.autogram.core.errors.OriginalDocumentNotFoundException;
 import digital.slovensko.autogram.core.util.AsicContainerUtils;
 import eu.europa.esig.dss.enumerations.MimeTypeEnum;
+import eu.europa.esig.dss.model.FileDocument;
 import eu.europa.esig.dss.model.InMemoryDocument;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Base64;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 class AsicContainerTest {
 
@@ -97,4 +106,56 @@ class AsicContainerTest {
 
         Assertions.assertThrows(MultipleOriginalDocumentsFoundException.class, () -> AsicContainerUtils.getOriginalDocument(asiceWithMultipleFiles));
     }
+
+    @Test
+    void testGetOriginalFileRejectsHighlyCompressedEntry() throws IOException {
+        var content = new ByteArrayOutputStream();
+        try (var zip = new ZipOutputStream(content)) {
+            zip.putNextEntry(new ZipEntry("mimetype"));
+            zip.write(MimeTypeEnum.ASICE.getMimeTypeString().getBytes(StandardCharsets.US_ASCII));
+            zip.putNextEntry(new ZipEntry("META-INF/signatures001.xml"));
+            zip.write("<signature/>".getBytes(StandardCharsets.US_ASCII));
+            zip.putNextEntry(new ZipEntry("document.txt"));
+            var zeros = new byte[1024 * 1024];
+            for (var i = 0; i < 20; i++)
+                zip.write(zeros);
+        }
+
+        var bomb = new InMemoryDocument(content.toByteArray(), null, MimeTypeEnum.ASICE);
+
+        Assertions.assertThrows(OriginalDocumentNotFoundException.class, () -> AsicContainerUtils.getOriginalDocument(bomb));
+    }
+
+    @Test
+    void testFileBackedContainerGivesTheSameOriginalDocument(@TempDir Path directory) throws IOException {
+        var content = this.getClass().getResourceAsStream("sample_txt_xades.asice").readAllBytes();
+        var file = directory.resolve("sample_txt_xades.asice");
+        Files.write(file, content);
+
+        var fromMemory = AsicContainerUtils.getOriginalDocument(new InMemoryDocument(content, file.getFileName().toString(), MimeTypeEnum.ASICE));
+        var fromFile = AsicContainerUtils.getOriginalDocument(new FileDocument(file.toFile()));
+
+        Assertions.assertEquals(fromMemory.getName(), fromFile.getName());
+        Assertions.assertEquals(fromMemory.getMimeType(), fromFile.getMimeType());
+        Assertions.assertArrayEquals(fromMemory.openStream().readAllBytes(), fromFile.openStream().readAllBytes());
+    }
+
+    @Test
+    void testFileBackedContainerRejectsHighlyCompressedEntry(@TempDir Path directory) throws IOException {
+        var file = directory.resolve("bomb.asice");
+        try (var zip = new ZipOutputStream(Files.newOutputStream(file))) {
+            zip.putNextEntry(new ZipEntry("mimetype"));
+            zip.write(MimeTypeEnum.ASICE.getMimeTypeString().getBytes(StandardCharsets.US_ASCII));
+            zip.putNextEntry(new ZipEntry("META-INF/signatures001.xml"));
+            zip.write("<signature/>".getBytes(StandardCharsets.US_ASCII));
+            zip.putNextEntry(new ZipEntry("document.txt"));
+            var zeros = new byte[1024 * 1024];
+            for (var i = 0; i < 20; i++)
+                zip.write(zeros);
+        }
+
+        var bomb = new FileDocument(file.toFile());
+
+        Assertions.assertThrows(OriginalDocumentNotFoundException.class, () -> AsicContainerUtils.getOriginalDocument(bomb));
+    }
 }
@@ -0,0 +1,111 @@
+package digital.slovensko.autogram.core;
+
+import digital.slovensko.autogram.core.validation.SignatureValidator;
+import eu.europa.esig.dss.enumerations.MimeTypeEnum;
+import eu.europa.esig.dss.enumerations.SignatureLevel;
+import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.model.InMemoryDocument;
+import eu.europa.esig.dss.model.ToBeSigned;
+import eu.europa.esig.dss.model.x509.CertificateToken;
+import eu.europa.esig.dss.spi.x509.KeyStoreCertificateSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Date;
+
+public class SigningSessionStoreTests {
+    private static final DSSDocument PDF = new InMemoryDocument("%PDF-1.4".getBytes(), "document.pdf", MimeTypeEnum.PDF);
+    private static final byte[] DATA_TO_SIGN = "data to sign".getBytes();
+
+    @Test
+    void testMatchingSessionIsTakenOnce() {
+        var store = new SigningSessionStore(4, Duration.ofMinutes(1));
+        var digest = digestOf(buildParameters(SignatureLevel.PAdES_BASELINE_B, false), 1000);
+        store.put(new ToBeSigned(DATA_TO_SIGN), digest, PDF);
+
+        var session = store.take(DATA_TO_SIGN, digestOf(buildParameters(SignatureLevel.PAdES_BASELINE_B, false), 1000), PDF);
+
+        Assertions.assertNotNull(session);
+        Assertions.assertArrayEquals(DATA_TO_SIGN, session.dataToSign());
+        Assertions.assertNull(store.take(DATA_TO_SIGN, digest, PDF));
+    }
+
+    @Test
+    void testSessionForOtherLevelIsNotUsed() {
+        var store = new SigningSessionStore(4, Duration.ofMinutes(1));
+        store.put(new ToBeSigned(DATA_TO_SIGN), digestOf(buildParameters(SignatureLevel.PAdES_BASELINE_B, false), 1000), PDF);
+
+        Assertions.assertNull(store.take(DATA_TO_SIGN, digestOf(buildParameters(SignatureLevel.PAdES_BASELINE_T, false), 1000), PDF));
+    }
+
+    @Test
+    void testSessionForOtherSignatureOptionsIsNotUsed() {
+        var store = new SigningSessionStore(4, Duration.ofMinutes(1));
+        var parameters = buildParameters(SignatureLevel.PAdES_BASELINE_B, false);
+
+        store.put(new ToBeSigned(DATA_TO_SIGN), digestOf(parameters, 1000), PDF);
+        Assertions.assertNull(store.take(DATA_TO_SIGN, digestOf(buildParameters(SignatureLevel.PAdES_BASELINE_B, true), 1000), PDF));
+
+        store.put(new ToBeSigned(DATA_TO_SIGN), digestOf(parameters, 1000), PDF);
+        parameters.setSignatureReference("reference");
+        Assertions.assertNull(store.take(DATA_TO_SIGN, digestOf(parameters, 1000), PDF));
+    }
+
+    @Test
+    void testSessionForOtherDocumentOrSigningTimeIsNotUsed() {
+        var store = new SigningSessionStore(4, Duration.ofMinutes(1));
+        var parameters = buildParameters(SignatureLevel.PAdES_BASELINE_B, false);
+        var otherPdf = new InMemoryDocument("%PDF-1.7".getBytes(), "document.pdf", MimeTypeEnum.PDF);
+
+        store.put(new ToBeSigned(DATA_TO_SIGN), digestOf(parameters, 1000), PDF);
+        Assertions.assertNull(store.take(DATA_TO_SIGN, digestOf(parameters, 1000), otherPdf));
+
+        store.put(new ToBeSigned(DATA_TO_SIGN), digestOf(parameters, 1000), PDF);
+        Assertions.assertNull(store.take(DATA_TO_SIGN, digestOf(parameters, 2000), PDF));
+    }
+
+    @Test
+    void testExpiredSessionIsNotUsed() throws InterruptedException {
+        var store = new SigningSessionStore(4, Duration.ofMillis(10));
+        var digest = digestOf(buildParameters(SignatureLevel.PAdES_BASELINE_B, false), 1000);
+        store.put(new ToBeSigned(DATA_TO_SIGN), digest, PDF);
+        Thread.sleep(20);
+
+        Assertions.assertNull(store.take(DATA_TO_SIGN, digest, PDF));
+    }
+
+    @Test
+    void testLeastRecentSessionIsEvictedAtCapacity() {
+        var store = new SigningSessionStore(2, Duration.ofMinutes(1));
+        var digest = digestOf(buildParameters(SignatureLevel.PAdES_BASELINE_B, false), 1000);
+        for (var i = 0; i < 3; i++)
+            store.put(new ToBeSigned(new byte[] { (byte) i }), digest, PDF);
+
+        Assertions.assertNull(store.take(new byte[] { 0 }, digest, PDF));
+        Assertions.assertNotNull(store.take(new byte[] { 1 }, digest, PDF));
+        Assertions.assertNotNull(store.take(new byte[] { 2 }, digest, PDF));
+    }
+
+    private static SigningParameters buildParameters(SignatureLevel level, boolean en319132) {
+        return SigningParameters.buildParameters(level, null, null, null, en319132, null, null, null, null, false, null,
+                false, 640, PDF);
+    }
+
+    // The same preparation as in SigningJob, without the document specific parts
+    private static byte[] digestOf(SigningParameters parameters, long signingTime) {
+        var signatureParameters = parameters.getSignatureParameters();
+        parameters.applySignatureReference(PDF, signatureParameters);
+        signatureParameters.setSigningCertificate(getCertificate());
+        signatureParameters.bLevel().setSigningDate(new Date(signingTime));
+
+        var digest = SigningSessionStore.digestOf(signatureParameters);
+        Assertions.assertNotNull(digest);
+        return digest;
+    }
+
+    private static CertificateToken getCertificate() {
+        var keystore = SignatureValidator.class.getResourceAsStream("lotlKeyStore.p12");
+        return new KeyStoreCertificateSource(keystore, "PKCS12", "dss-password".toCharArray()).getCertificates().get(0);
+    }
+}
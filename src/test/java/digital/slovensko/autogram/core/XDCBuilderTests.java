@@ -7,43 +7,21 @@ import digital.slovensko.autogram.core.eforms.xdc.XDCBuilder;
 import eu.europa.esig.dss.enumerations.*;
 import eu.europa.esig.dss.model.InMemoryDocument;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import javax.xml.crypto.dsig.CanonicalizationMethod;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class XDCBuilderTests {
     @Test
     void testTransformsPlainHtmlWithoutAddingNamespaces() throws IOException {
-        var transformation = new String(this.getClass().getResourceAsStream("general_agenda.xslt").readAllBytes(), StandardCharsets.UTF_8);
-        var xsdSchema = new String(this.getClass().getResourceAsStream("general_agenda.xsd").readAllBytes(), StandardCharsets.UTF_8);
-
         var document = new InMemoryDocument(this.getClass().getResourceAsStream("general_agenda.xml").readAllBytes(), "general_agenda.xml", MimeTypeEnum.XML);
-
-        var params = SigningParameters.buildParameters(
-            SignatureLevel.XAdES_BASELINE_B,
-            DigestAlgorithm.SHA256,
-            ASiCContainerType.ASiC_E,
-            SignaturePackaging.ENVELOPING,
-            false,
-            CanonicalizationMethod.INCLUSIVE,
-            CanonicalizationMethod.INCLUSIVE,
-            CanonicalizationMethod.INCLUSIVE,
-            new EFormAttributes(
-                    "http://data.gov.sk/doc/eform/App.GeneralAgenda/1.9",
-                    transformation,
-                    xsdSchema,
-                    "http://data.gov.sk/def/container/xmldatacontainer+xml/1.1",
-                    null,
-                    null,
-                    false),
-            false,
-            null,
-            false,
-            800,
-            document);
+        var params = getGeneralAgendaParameters(document);
 
         var out = XDCBuilder.transform(params, document.getName(), EFormUtils.getXmlFromDocument(document));
         var transformed = new String(out.openStream().readAllBytes(), StandardCharsets.UTF_8);
@@ -105,4 +83,103 @@ class XDCBuilderTests {
 
         org.junit.jupiter.api.Assertions.assertTrue(transformed.contains("UsedPresentationSchemaReference"));
     }
+
+    @Test
+    void testStreamingWriterProducesTheSameBytes() throws IOException {
+        var document = new InMemoryDocument(this.getClass().getResourceAsStream("general_agenda.xml").readAllBytes(), "general_agenda.xml", MimeTypeEnum.XML);
+        var params = getGeneralAgendaParameters(document);
+
+        var expected = XDCBuilder.transform(params, document.getName(), EFormUtils.getXmlFromDocument(document));
+        var streamed = XDCBuilder.transform(params, document.getName(), EFormUtils.getXmlFromDocument(document), true);
+        assertArrayEquals(expected.openStream().readAllBytes(), streamed.openStream().readAllBytes());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"general_agenda.xml", "general_agenda_header.xml", "general_agenda_indented.xml", "general_agenda_header_indented.xml"})
+    void testStreamingWriterProducesTheSameBytesAsSaxon(String filename) throws IOException {
+        var document = new InMemoryDocument(this.getClass().getResourceAsStream(filename).readAllBytes(), filename, MimeTypeEnum.XML);
+        var params = getGeneralAgendaParameters(document);
+
+        var expected = XDCBuilder.transform(params, document.getName(), EFormUtils.getXmlFromDocument(document), false);
+        var streamed = XDCBuilder.transform(params, document.getName(), EFormUtils.getXmlFromDocument(document), true);
+        assertArrayEquals(expected.openStream().readAllBytes(), streamed.openStream().readAllBytes());
+    }
+
+    @Test
+    void testStreamingWriterProducesTheSameBytesWithEmbeddedSchemas() throws IOException {
+        var transformation = """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <xsl:stylesheet version="1.0" xmlns:xsl="http://www.w3.org/1999/XSL/Transform">
+                    <!-- plain text rendering -->
+                    <xsl:output method="text" omit-xml-declaration="yes" />
+                    <xsl:template match="/" xmlns:xsl="http://www.w3.org/1999/XSL/Transform"><![CDATA[Ahoj <svet> & "všetci"]]><xsl:value-of select="."/></xsl:template>
+                </xsl:stylesheet>
+                """;
+        var xsdSchema = """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <xs:schema xmlns:xs="http://www.w3.org/2001/XMLSchema" xmlns:x="urn:x">
+                    <!-- any content is allowed in the root -->
+                    <xs:element name="root" xmlns:xs="http://www.w3.org/2001/XMLSchema">
+                        <xs:annotation xmlns:x="urn:x"><xs:documentation><![CDATA[Koreň <root> & 'príloha']]></xs:documentation></xs:annotation>
+                    </xs:element>
+                </xs:schema>
+                """;
+        var content = "<root xmlns:x=\"urn:x\"><!-- poznámka --><x:item xmlns:x=\"urn:x\"><![CDATA[a < b & \"c\"]]></x:item></root>";
+        var document = new InMemoryDocument(content.getBytes(StandardCharsets.UTF_8), "root.xml", MimeTypeEnum.XML);
+
+        var params = SigningParameters.buildParameters(
+                SignatureLevel.XAdES_BASELINE_B,
+                DigestAlgorithm.SHA256,
+                ASiCContainerType.ASiC_E,
+                SignaturePackaging.ENVELOPING,
+                false,
+                CanonicalizationMethod.INCLUSIVE,
+                CanonicalizationMethod.INCLUSIVE,
+                CanonicalizationMethod.INCLUSIVE,
+                new EFormAttributes(
+                        "http://data.gov.sk/doc/eform/Test/1.0",
+                        transformation,
+                        xsdSchema,
+                        "http://data.gov.sk/def/container/xmldatacontainer+xml/1.1",
+                        null,
+                        new XsltParams("http://data.gov.sk/doc/eform/Test/1.0/form.xslt", "sk", "TXT", null, "text/plain"),
+                        true),
+                false,
+                null,
+                false,
+                800,
+                document);
+
+        var expected = XDCBuilder.transform(params, document.getName(), EFormUtils.getXmlFromDocument(document));
+        var streamed = XDCBuilder.transform(params, document.getName(), EFormUtils.getXmlFromDocument(document), true);
+        assertArrayEquals(expected.openStream().readAllBytes(), streamed.openStream().readAllBytes());
+    }
+
+    private SigningParameters getGeneralAgendaParameters(InMemoryDocument document) throws IOException {
+        var transformation = new String(this.getClass().getResourceAsStream("general_agenda.xslt").readAllBytes(), StandardCharsets.UTF_8);
+        var xsdSchema = new String(this.getClass().getResourceAsStream("general_agenda.xsd").readAllBytes(), StandardCharsets.UTF_8);
+
+        return SigningParameters.buildParameters(
+            SignatureLevel.XAdES_BASELINE_B,
+            DigestAlgorithm.SHA256,
+            ASiCContainerType.ASiC_E,
+            SignaturePackaging.ENVELOPING,
+            false,
+            CanonicalizationMethod.INCLUSIVE,
+            CanonicalizationMethod.INCLUSIVE,
+            CanonicalizationMethod.INCLUSIVE,
+            new EFormAttributes(
+                    "http://data.gov.sk/doc/eform/App.GeneralAgenda/1.9",
+                    transformation,
+                    xsdSchema,
+                    "http://data.gov.sk/def/container/xmldatacontainer+xml/1.1",
+                    null,
+                    null,
+                    false),
+            false,
+            null,
+            false,
+            800,
+            document);
+    }
 }
@@ -66,4 +66,13 @@ public class XDCValidatorTests {
 
         Assertions.assertThrows(XMLValidationException.class, () -> EFormUtils.getEformXmlFromXdcDocument(document));
     }
+
+    @Test
+    void testIsXDCContentChecksRootElement() throws IOException {
+        var xdc = new InMemoryDocument(this.getClass().getResourceAsStream("general_agenda.xdcf").readAllBytes(), null);
+        var plainXml = new InMemoryDocument(this.getClass().getResourceAsStream("general_agenda.xml").readAllBytes(), null);
+
+        Assertions.assertTrue(XDCValidator.isXDCContent(xdc));
+        Assertions.assertFalse(XDCValidator.isXDCContent(plainXml));
+    }
 }
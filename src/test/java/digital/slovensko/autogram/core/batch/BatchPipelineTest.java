@@ -0,0 +1,168 @@
+package digital.slovensko.autogram.core.batch;
+
+import digital.slovensko.autogram.core.BaselineLevel;
+import digital.slovensko.autogram.core.Responder;
+import digital.slovensko.autogram.core.SigningJob;
+import digital.slovensko.autogram.core.SigningParameters;
+import digital.slovensko.autogram.core.dto.SignedDocument;
+import digital.slovensko.autogram.core.dto.SigningKey;
+import digital.slovensko.autogram.core.errors.AutogramException;
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.model.InMemoryDocument;
+import eu.europa.esig.dss.model.SignatureValue;
+import eu.europa.esig.dss.model.ToBeSigned;
+import eu.europa.esig.dss.token.AbstractKeyStoreTokenConnection;
+import eu.europa.esig.dss.token.DSSPrivateKeyEntry;
+import eu.europa.esig.dss.token.Pkcs12SignatureToken;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BatchPipelineTest {
+    private static final int DOCUMENTS = 500;
+    private static final char[] PASSWORD = "password".toCharArray();
+
+    private static byte[] keyStore;
+    private static byte[] sample;
+
+    @BeforeAll
+    static void createKeyStore() throws Exception {
+        var generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        var keyPair = generator.generateKeyPair();
+
+        var name = new X500Name("CN=Batch Test");
+        var now = System.currentTimeMillis();
+        var holder = new JcaX509v3CertificateBuilder(name, BigInteger.ONE, new Date(now - 60_000),
+                new Date(now + 24 * 60 * 60 * 1000), name, keyPair.getPublic())
+                .build(new JcaContentSignerBuilder("SHA256withRSA").build(keyPair.getPrivate()));
+        var certificate = new JcaX509CertificateConverter().getCertificate(holder);
+
+        var ks = KeyStore.getInstance("PKCS12");
+        ks.load(null, null);
+        ks.setKeyEntry("batch", keyPair.getPrivate(), PASSWORD, new Certificate[]{certificate});
+        var out = new ByteArrayOutputStream();
+        ks.store(out, PASSWORD);
+        keyStore = out.toByteArray();
+
+        try (var in = SigningJob.class.getResourceAsStream("sample.txt")) {
+            sample = in.readAllBytes();
+        }
+    }
+
+    @Test
+    void testSignsWholeBatchConcurrently() throws Exception {
+        var token = new Pkcs12SignatureToken(keyStore, new KeyStore.PasswordProtection(PASSWORD));
+        var responder = new CollectingResponder();
+        var batch = signBatch(new SigningKey(token, token.getKeys().get(0)), responder);
+
+        Assertions.assertTrue(responder.errors.isEmpty(), () -> responder.errors.toString());
+        Assertions.assertEquals(DOCUMENTS, responder.signed.get());
+        Assertions.assertTrue(batch.isAllProcessed());
+    }
+
+    @Test
+    void testSigningIsSerializedForTokensWithSingleSession() throws Exception {
+        var token = new SingleSessionToken(keyStore);
+        var responder = new CollectingResponder();
+        signBatch(new SigningKey(token, token.getKeys().get(0)), responder);
+
+        Assertions.assertTrue(responder.errors.isEmpty(), () -> responder.errors.toString());
+        Assertions.assertEquals(DOCUMENTS, responder.signed.get());
+        Assertions.assertEquals(DOCUMENTS, token.calls.get());
+        Assertions.assertEquals(1, token.maxConcurrentCalls.get());
+    }
+
+    private static Batch signBatch(SigningKey signingKey, Responder responder) {
+        var batch = new Batch(DOCUMENTS);
+        batch.start(signingKey);
+
+        var futures = new ArrayList<CompletableFuture<Void>>();
+        try (var pipeline = new BatchPipeline(batch, null)) {
+            for (int i = 0; i < DOCUMENTS; i++) {
+                var document = new InMemoryDocument(sample, "sample-" + i + ".txt");
+                futures.add(pipeline.submit(batch.getBatchId(), r -> SigningJob.buildFromRequest(document,
+                        SigningParameters.buildForASiCWithXAdES(document, false, false, BaselineLevel.B, false), r), responder));
+            }
+
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+            System.out.println("Signed " + DOCUMENTS + " documents in " + pipeline.getElapsedMillis() + " ms");
+        }
+
+        return batch;
+    }
+
+    private static class CollectingResponder implements Responder {
+        private final AtomicInteger signed = new AtomicInteger();
+        private final ConcurrentLinkedQueue<AutogramException> errors = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public void onSuccess(SignedDocument signedDocument) {
+            signed.incrementAndGet();
+        }
+
+        @Override
+        public void onError(AutogramException error) {
+            errors.add(error);
+        }
+    }
+
+    // Stands in for a hardware token, records how many signatures run at the same time
+    private static class SingleSessionToken extends AbstractKeyStoreTokenConnection {
+        private final KeyStore keyStore;
+        private final AtomicInteger concurrentCalls = new AtomicInteger();
+        private final AtomicInteger maxConcurrentCalls = new AtomicInteger();
+        private final AtomicInteger calls = new AtomicInteger();
+
+        SingleSessionToken(byte[] keyStoreBytes) throws Exception {
+            keyStore = KeyStore.getInstance("PKCS12");
+            keyStore.load(new ByteArrayInputStream(keyStoreBytes), PASSWORD);
+        }
+
+        @Override
+        public SignatureValue sign(ToBeSigned toBeSigned, DigestAlgorithm digestAlgorithm, DSSPrivateKeyEntry keyEntry) {
+            var current = concurrentCalls.incrementAndGet();
+            maxConcurrentCalls.accumulateAndGet(current, Math::max);
+            calls.incrementAndGet();
+            try {
+                Thread.sleep(1);
+                return super.sign(toBeSigned, digestAlgorithm, keyEntry);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } finally {
+                concurrentCalls.decrementAndGet();
+            }
+        }
+
+        @Override
+        protected KeyStore getKeyStore() {
+            return keyStore;
+        }
+
+        @Override
+        protected KeyStore.PasswordProtection getKeyProtectionParameter() {
+            return new KeyStore.PasswordProtection(PASSWORD);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
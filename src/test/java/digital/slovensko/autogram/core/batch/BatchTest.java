@@ -0,0 +1,91 @@
+package digital.slovensko.autogram.core.batch;
+
+import digital.slovensko.autogram.core.errors.BatchEndedException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BatchTest {
+    private static final int THREADS = 64;
+
+    @Test
+    void testConcurrentAddJobAdmitsOnlyDeclaredCount() throws Exception {
+        var batch = new Batch(10);
+        batch.start(null);
+
+        var admitted = new AtomicInteger();
+        var rejected = new AtomicInteger();
+        runConcurrently(() -> {
+            try {
+                batch.addJob(batch.getBatchId());
+                admitted.incrementAndGet();
+            } catch (IllegalAccessError e) {
+                rejected.incrementAndGet();
+            }
+            return null;
+        });
+
+        Assertions.assertEquals(10, admitted.get());
+        Assertions.assertEquals(THREADS - 10, rejected.get());
+    }
+
+    @Test
+    void testConcurrentStartHasSingleWinner() throws Exception {
+        var batch = new Batch(1);
+
+        var started = new AtomicInteger();
+        runConcurrently(() -> {
+            try {
+                batch.start(null);
+                started.incrementAndGet();
+            } catch (BatchEndedException e) {
+                // only one start may win
+            }
+            return null;
+        });
+
+        Assertions.assertEquals(1, started.get());
+        Assertions.assertFalse(batch.isKeyChangeAllowed());
+    }
+
+    @Test
+    void testConcurrentCompletionsAreAllCounted() throws Exception {
+        var batch = new Batch(THREADS);
+        batch.start(null);
+
+        var index = new AtomicInteger();
+        runConcurrently(() -> {
+            if (index.getAndIncrement() % 2 == 0)
+                batch.onJobSuccess();
+            else
+                batch.onJobFailure();
+
+            return null;
+        });
+
+        Assertions.assertEquals(THREADS, batch.getProcessedDocumentsCount());
+        Assertions.assertTrue(batch.isAllProcessed());
+    }
+
+    private static void runConcurrently(Callable<Void> task) throws Exception {
+        var ready = new CountDownLatch(1);
+        try (var executor = Executors.newFixedThreadPool(THREADS)) {
+            var futures = new ArrayList<Future<Void>>();
+            for (int i = 0; i < THREADS; i++)
+                futures.add(executor.submit(() -> {
+                    ready.await();
+                    return task.call();
+                }));
+
+            ready.countDown();
+            for (var future : futures)
+                future.get();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package digital.slovensko.autogram.core.eforms;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+
+import javax.xml.crypto.dsig.CanonicalizationMethod;
+
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.service.http.commons.FileCacheDataLoader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EFormResourceBundleTests {
+    private static final String XSLT_URL = "https://test.example/form/Content/form.html.xslt";
+
+    @Test
+    void generatedBundleServesResourcesAndDigestsWithoutNetwork(@TempDir Path directory) throws Exception {
+        byte[] xslt;
+        try (var input = EFormResourceBundleTests.class.getResourceAsStream(
+                "/digital/slovensko/autogram/core/visualization/PovolenieZdravotnictvo.html.xslt")) {
+            xslt = Objects.requireNonNull(input).readAllBytes();
+        }
+
+        var mirror = directory.resolve("mirror");
+        Files.createDirectories(mirror.resolve("test.example/form/Content"));
+        Files.write(mirror.resolve("test.example/form/Content/form.html.xslt"), xslt);
+        var bundleFile = directory.resolve("eforms.bundle");
+        EFormResourceBundleGenerator.generate(mirror, bundleFile, "2026-10-17");
+
+        var bundle = EFormResourceBundle.open(bundleFile);
+        var dataLoader = new FileCacheDataLoader() {
+            @Override
+            public DSSDocument getDocument(String url) {
+                throw new AssertionError("Unexpected download of " + url);
+            }
+        };
+        var resourceLoader = new EFormResourceLoader(dataLoader, bundle);
+
+        Assertions.assertEquals("2026-10-17", bundle.getVersion());
+        Assertions.assertArrayEquals(xslt, resourceLoader.getResource(XSLT_URL));
+        Assertions.assertEquals(
+                EFormUtils.computeDigest(xslt, CanonicalizationMethod.INCLUSIVE, DigestAlgorithm.SHA256,
+                        EFormUtils.ENCODING, true),
+                bundle.getArtefact(XSLT_URL, EFormResourceCache.digestKey(CanonicalizationMethod.INCLUSIVE, true)));
+        Assertions.assertTrue(bundle.contains("http://test.example/form/Content/form.html.xslt"));
+        Assertions.assertFalse(bundle.contains("https://test.example/form/Content/form.sb.xslt"));
+    }
+}
@@ -2,10 +2,18 @@ package digital.slovensko.autogram.core.eforms;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.xml.crypto.dsig.CanonicalizationMethod;
 
 import digital.slovensko.autogram.core.util.XMLUtils;
 import eu.europa.esig.dss.model.DSSDocument;
@@ -52,6 +60,74 @@ class EFormResourceLoaderTests {
         Assertions.assertTrue(dataLoader.getRequestedUrls().isEmpty());
     }
 
+    @Test
+    void getResourceServesRepeatedRequestsFromMemory() {
+        var xsltUrl = RESOURCE_PATH + "form.UDZSRozhodnutie.html.xslt";
+        var dataLoader = new TestDataLoader(Map.of(xsltUrl, "PovolenieZdravotnictvo.html.xslt"));
+        var resourceLoader = new EFormResourceLoader(dataLoader);
+
+        var first = resourceLoader.getResource(xsltUrl);
+        var second = resourceLoader.getResource(xsltUrl);
+        var firstDigest = resourceLoader.getResourceDigest(xsltUrl, first, CanonicalizationMethod.INCLUSIVE, true);
+        var secondDigest = resourceLoader.getResourceDigest(xsltUrl, second, CanonicalizationMethod.INCLUSIVE, true);
+
+        Assertions.assertArrayEquals(first, second);
+        Assertions.assertEquals(firstDigest, secondDigest);
+        Assertions.assertEquals(List.of(xsltUrl), dataLoader.getRequestedUrls());
+    }
+
+    @Test
+    void getManifestXsltEntriesRetriesXsltThatWasUnavailable() {
+        var htmlXsltUrl = RESOURCE_PATH + "form.UDZSRozhodnutie.html.xslt";
+        var signingXsltUrl = RESOURCE_PATH + "form.UDZSRozhodnutie.sb.xslt";
+        var fixtures = new HashMap<String, String>(Map.of(
+                SOURCE_URL + FORM_URL + "/META-INF/manifest.xml",
+                "/digital/slovensko/autogram/core/eforms/manifest_media_destination_type_description_empty.xml",
+                htmlXsltUrl, "PovolenieZdravotnictvo.html.xslt"));
+        var resourceLoader = new EFormResourceLoader(new TestDataLoader(fixtures));
+
+        Assertions.assertEquals(1, resourceLoader.getManifestXsltEntries(SOURCE_URL, FORM_URL).size());
+
+        fixtures.put(signingXsltUrl, "PovolenieZdravotnictvo.sb.xslt");
+
+        Assertions.assertEquals(2, resourceLoader.getManifestXsltEntries(SOURCE_URL, FORM_URL).size());
+    }
+
+    @Test
+    void getManifestXsltEntriesResolvesSequentiallyAfterTheDeadline() throws Exception {
+        var htmlXsltUrl = RESOURCE_PATH + "form.UDZSRozhodnutie.html.xslt";
+        var signingXsltUrl = RESOURCE_PATH + "form.UDZSRozhodnutie.sb.xslt";
+        var blocked = new AtomicBoolean();
+        var neverReleased = new CountDownLatch(1);
+        var dataLoader = new TestDataLoader(Map.of(
+                htmlXsltUrl, "PovolenieZdravotnictvo.html.xslt",
+                signingXsltUrl, "PovolenieZdravotnictvo.sb.xslt")) {
+            @Override
+            public DSSDocument getDocument(String url) {
+                // The first download of the html XSLT hangs until the concurrent resolution gives up on it
+                if (url.equals(htmlXsltUrl) && blocked.compareAndSet(false, true)) {
+                    try {
+                        neverReleased.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+                return super.getDocument(url);
+            }
+        };
+        var resourceLoader = new EFormResourceLoader(dataLoader);
+        resourceLoader.setParallelResolutionDeadline(Duration.ofMillis(100));
+
+        var entries = resourceLoader.getManifestXsltEntries(
+                getManifestFileEntries("manifest_media_destination_type_description_empty.xml"), SOURCE_URL, FORM_URL);
+
+        Assertions.assertEquals(List.of("HTML", "HTML"), entries.stream()
+                .map(entry -> entry.destinationType())
+                .toList());
+        Assertions.assertTrue(blocked.get());
+    }
+
     private static NodeList getManifestFileEntries(String filename) throws Exception {
         try (var input = EFormResourceLoaderTests.class.getResourceAsStream(
                 "/digital/slovensko/autogram/core/eforms/" + filename)) {
@@ -60,9 +136,9 @@ class EFormResourceLoaderTests {
         }
     }
 
-    private static final class TestDataLoader extends FileCacheDataLoader {
+    private static class TestDataLoader extends FileCacheDataLoader {
         private final Map<String, String> fixturesByUrl;
-        private final List<String> requestedUrls = new ArrayList<>();
+        private final List<String> requestedUrls = Collections.synchronizedList(new ArrayList<>());
 
         private TestDataLoader(Map<String, String> fixturesByUrl) {
             this.fixturesByUrl = fixturesByUrl;
@@ -76,8 +152,8 @@ class EFormResourceLoaderTests {
             if (fixture == null)
                 return null;
 
-            try (var input = EFormResourceLoaderTests.class.getResourceAsStream(
-                    "/digital/slovensko/autogram/core/visualization/" + fixture)) {
+            var path = fixture.startsWith("/") ? fixture : "/digital/slovensko/autogram/core/visualization/" + fixture;
+            try (var input = EFormResourceLoaderTests.class.getResourceAsStream(path)) {
                 return new InMemoryDocument(Objects.requireNonNull(input).readAllBytes(), fixture);
             } catch (IOException e) {
                 throw new UncheckedIOException(e);
@@ -119,4 +119,40 @@ public class EFormUtilsTests {
 
         Assertions.assertFalse(digest.isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testComputeDigestIsRememberedPerContentAndParameters() {
+        // Unique content, so the first digest is never served by another test
+        var transformation = ("""
+                <xsl:stylesheet version="1.0" xmlns:xsl="http://www.w3.org/1999/XSL/Transform">
+                    <xsl:output method="text" omit-xml-declaration="yes" />
+                    <xsl:template match="/">%s</xsl:template>
+                </xsl:stylesheet>
+                """).formatted(System.nanoTime()).getBytes(StandardCharsets.UTF_8);
+
+        var misses = EFormUtils.getDigestCacheMisses();
+        var digest = EFormUtils.computeDigest(transformation, CanonicalizationMethod.INCLUSIVE, DigestAlgorithm.SHA256,
+                StandardCharsets.UTF_8);
+        Assertions.assertEquals(misses + 1, EFormUtils.getDigestCacheMisses());
+
+        var hits = EFormUtils.getDigestCacheHits();
+        Assertions.assertEquals(digest, EFormUtils.computeDigest(transformation.clone(), CanonicalizationMethod.INCLUSIVE,
+                DigestAlgorithm.SHA256, StandardCharsets.UTF_8));
+        Assertions.assertEquals(hits + 1, EFormUtils.getDigestCacheHits());
+        Assertions.assertEquals(misses + 1, EFormUtils.getDigestCacheMisses());
+
+        EFormUtils.computeDigest(transformation, CanonicalizationMethod.EXCLUSIVE, DigestAlgorithm.SHA256,
+                StandardCharsets.UTF_8);
+        Assertions.assertEquals(misses + 2, EFormUtils.getDigestCacheMisses());
+
+        var sha512 = EFormUtils.computeDigest(transformation, CanonicalizationMethod.INCLUSIVE, DigestAlgorithm.SHA512,
+                StandardCharsets.UTF_8);
+        Assertions.assertEquals(misses + 3, EFormUtils.getDigestCacheMisses());
+        Assertions.assertNotEquals(digest, sha512);
+
+        EFormUtils.computeDigest(transformation, CanonicalizationMethod.INCLUSIVE, DigestAlgorithm.SHA256,
+                StandardCharsets.UTF_8, true);
+        Assertions.assertEquals(misses + 4, EFormUtils.getDigestCacheMisses());
+        Assertions.assertEquals(hits + 1, EFormUtils.getDigestCacheHits());
+    }
+}
@@ -0,0 +1,46 @@
+package digital.slovensko.autogram.core.eforms;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class FsFormCatalogueTests {
+    private static final byte[] FORMS_XML = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <forms xmlns="urn:meta.slovensko.digital:1.0">
+              <form sdIdentifier="793_1" xdcIdentifier="http://www.financnasprava.sk/form/a" slug="a" version="1.1"/>
+              <form sdIdentifier="793_1" xdcIdentifier="http://www.financnasprava.sk/form/b/1.0" slug="b" version="1.0"/>
+              <form sdIdentifier="800_1" xdcIdentifier="http://www.financnasprava.sk/form/c" slug="" version="1.0"/>
+              <form sdIdentifier="800_1" xdcIdentifier="http://www.financnasprava.sk/form/c" slug="c" version="1.0"/>
+              <form sdIdentifier="810_1" xdcIdentifier="http://www.financnasprava.sk/form/e" version="1.0"/>
+              <form sdIdentifier="810_1" xdcIdentifier="http://www.financnasprava.sk/form/e" slug="e" version="2.0"/>
+            </forms>
+            """.getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void testFirstFormInDocumentOrderWins() {
+        var catalogue = FsFormCatalogue.parse(FORMS_XML);
+
+        Assertions.assertEquals("a/1.1", catalogue.getFormUrlFromFsFormId("793_1"));
+        Assertions.assertNull(catalogue.getFormUrlFromFsFormId("800_1"));
+        Assertions.assertNull(catalogue.getFormUrlFromXdcIdentifier("http://www.financnasprava.sk/form/c"));
+    }
+
+    @Test
+    void testFormWithoutSlugIsSkipped() {
+        var catalogue = FsFormCatalogue.parse(FORMS_XML);
+
+        Assertions.assertEquals("e/2.0", catalogue.getFormUrlFromFsFormId("810_1"));
+        Assertions.assertEquals("e/2.0", catalogue.getFormUrlFromXdcIdentifier("http://www.financnasprava.sk/form/e"));
+    }
+
+    @Test
+    void testXdcIdentifierVersionFallbacks() {
+        var catalogue = FsFormCatalogue.parse(FORMS_XML);
+
+        Assertions.assertEquals("a/1.1", catalogue.getFormUrlFromXdcIdentifier("http://www.financnasprava.sk/form/a/1.0"));
+        Assertions.assertEquals("b/1.0", catalogue.getFormUrlFromXdcIdentifier("http://www.financnasprava.sk/form/b"));
+        Assertions.assertNull(catalogue.getFormUrlFromXdcIdentifier("http://www.financnasprava.sk/form/d"));
+    }
+}
@@ -0,0 +1,88 @@
+package digital.slovensko.autogram.core.server;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import digital.slovensko.autogram.core.server.dto.Document;
+import digital.slovensko.autogram.core.server.dto.SignedDocumentResponse;
+import eu.europa.esig.dss.enumerations.MimeTypeEnum;
+import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.model.InMemoryDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Base64;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EndpointUtilsTest {
+    private static final Gson gson = new Gson();
+
+    private HttpServer server;
+    private volatile Consumer<HttpExchange> handler;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> handler.accept(exchange));
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void testStreamedDocumentEqualsGsonSerialization() throws Exception {
+        // Larger than the block read ahead and not a multiple of 3, so the Base64 content is padded
+        var document = documentOf(20000, "podpísaný <dokument> & 'príloha'.pdf");
+        handler = exchange -> EndpointUtils.respondWithDocument(document, exchange);
+
+        var expected = gson.toJson(new Document(document.getName(), base64Of(document),
+                MimeTypeEnum.PDF.getMimeTypeString() + ";base64"));
+
+        assertEquals(expected, get());
+    }
+
+    @Test
+    void testStreamedSignedDocumentEqualsGsonSerialization() throws Exception {
+        var document = documentOf(10, "document.pdf");
+        handler = exchange -> EndpointUtils.respondWithSignedDocument(document, "CN=Signer", null, exchange);
+
+        var expected = gson.toJson(new SignedDocumentResponse(base64Of(document),
+                MimeTypeEnum.PDF.getMimeTypeString() + ";base64", document.getName(), "CN=Signer", null));
+
+        assertEquals(expected, get());
+    }
+
+    private String get() throws IOException, InterruptedException {
+        var uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/");
+        try (var client = HttpClient.newHttpClient()) {
+            var response = client.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode());
+            return response.body();
+        }
+    }
+
+    private static DSSDocument documentOf(int length, String name) {
+        var content = new byte[length];
+        new Random(length).nextBytes(content);
+        return new InMemoryDocument(content, name, MimeTypeEnum.PDF);
+    }
+
+    private static String base64Of(DSSDocument document) throws IOException {
+        try (var stream = document.openStream()) {
+            return Base64.getEncoder().encodeToString(stream.readAllBytes());
+        }
+    }
+}
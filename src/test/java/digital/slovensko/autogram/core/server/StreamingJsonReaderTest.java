@@ -0,0 +1,189 @@
+package digital.slovensko.autogram.core.server;
+
+import com.google.gson.Gson;
+import digital.slovensko.autogram.core.server.dto.CompareRequestBody;
+import digital.slovensko.autogram.core.server.dto.Document;
+import digital.slovensko.autogram.core.server.dto.SignRequestBody;
+import digital.slovensko.autogram.core.server.errors.MalformedBodyException;
+import com.google.gson.JsonSyntaxException;
+import eu.europa.esig.dss.model.FileDocument;
+import eu.europa.esig.dss.model.InMemoryDocument;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingJsonReaderTest {
+    private static final Gson gson = new Gson();
+
+    private static StreamingJsonReader readerOf(String json, long threshold) {
+        return new StreamingJsonReader(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), threshold);
+    }
+
+    @Test
+    void testDecodesContentWhileParsing() throws IOException {
+        var content = Base64.getEncoder().encodeToString("Hello, world".getBytes(StandardCharsets.UTF_8));
+        var reader = readerOf("{\"filename\": \"a.txt\", \"content\": \"" + content + "\", \"mimeType\": \"text/plain;base64\"}", 1024);
+
+        try (var request = new StreamedRequest<>(gson.fromJson(reader.read(), Document.class), reader.getContents())) {
+            var document = request.body();
+
+            assertEquals("a.txt", document.filename());
+            assertEquals("text/plain;base64", document.mimeType());
+            try (var stream = document.getDecodedContent(request).openStream()) {
+                assertEquals("Hello, world", new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    void testSpillsLargeContentToFile() throws IOException {
+        var bytes = new byte[10000];
+        for (var i = 0; i < bytes.length; i++)
+            bytes[i] = (byte) i;
+
+        var content = Base64.getEncoder().encodeToString(bytes).replace("/", "\\/");
+        var reader = readerOf("{\"originalDocuments\": [{\"content\": \"" + content + "\"}], \"signedDocument\": {\"content\": \"" + content + "\", \"filename\": \"b.bin\"}}", 100);
+
+        try (var request = new StreamedRequest<>(gson.fromJson(reader.read(), CompareRequestBody.class), reader.getContents())) {
+            var body = request.body();
+            body.validate();
+
+            try (var stream = body.getSignedDSSDocument(request).openStream()) {
+                assertArrayEquals(bytes, stream.readAllBytes());
+            }
+            assertEquals("b.bin", body.getSignedDSSDocument(request).getName());
+            assertEquals(2, reader.getContents().size());
+        }
+    }
+
+    @Test
+    void testDoesNotResolveMarkerOfAnotherRequest() throws IOException {
+        var reader = readerOf("{\"content\": \"" + base64Of(10) + "\"}", 1024);
+        reader.read();
+        var marker = reader.getContents().get(0).getMarker();
+
+        try (var request = new StreamedRequest<>(new Document(marker), List.of())) {
+            assertThrows(MalformedBodyException.class, () -> request.body().getDecodedContent(request));
+        }
+
+        reader.closeContents();
+    }
+
+    @Test
+    void testKeepsContentUpToThresholdInMemory() throws IOException {
+        // the threshold applies to the content as sent, 100 and 104 Base64 characters
+        var reader = readerOf("[{\"content\": \"" + base64Of(75) + "\"}, {\"content\": \"" + base64Of(76) + "\"}]", 100);
+        reader.read();
+
+        var contents = reader.getContents();
+        assertInstanceOf(InMemoryDocument.class, contents.get(0).toDocument());
+        assertInstanceOf(FileDocument.class, contents.get(1).toDocument());
+
+        reader.closeContents();
+    }
+
+    @Test
+    void testDeletesSpilledFileWhileItIsRead() throws IOException {
+        var reader = readerOf("{\"content\": \"" + base64Of(1000) + "\"}", 100);
+        reader.read();
+
+        var document = (FileDocument) reader.getContents().get(0).toDocument("a.bin");
+        assertEquals("a.bin", document.getName());
+        try (var stream = document.openStream()) {
+            assertEquals(0, stream.read());
+
+            reader.closeContents();
+            assertFalse(document.getFile().exists());
+        }
+    }
+
+    @Test
+    void testRejectsInvalidBase64() throws IOException {
+        assertRejectedAsBase64("not base64!", 1024);
+        assertRejectedAsBase64("not base64!", 4);
+    }
+
+    @Test
+    void testRejectsDataAfterPadding() throws IOException {
+        assertRejectedAsBase64("QQ==QQ==", 1024);
+        assertRejectedAsBase64("QQ==QQ==", 4);
+    }
+
+    @Test
+    void testKeepsContentOfSignRequestAsSentUnlessBase64() throws IOException {
+        var text = "Dobrý deň, \"svet\"";
+        var json = "{\"document\": {\"content\": \"" + text.replace("\"", "\\\"") + "\"}, \"payloadMimeType\": \"text/plain\"}";
+
+        for (var threshold : new long[]{1024, 4}) {
+            var reader = readerOf(json, threshold);
+            try (var request = new StreamedRequest<>(gson.fromJson(reader.read(), SignRequestBody.class), reader.getContents())) {
+                request.body().resolveStreamedContent(request);
+
+                try (var stream = request.body().getDocument().openStream()) {
+                    assertEquals(text, new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testDecodesContentOfSignRequestDeclaredAsBase64() throws IOException {
+        var content = Base64.getEncoder().encodeToString("Hello, world".getBytes(StandardCharsets.UTF_8));
+        var reader = readerOf("{\"payloadMimeType\": \"text/plain;base64\", \"document\": {\"content\": \"" + content + "\"}}", 1024);
+
+        try (var request = new StreamedRequest<>(gson.fromJson(reader.read(), SignRequestBody.class), reader.getContents())) {
+            request.body().resolveStreamedContent(request);
+
+            try (var stream = request.body().getDocument().openStream()) {
+                assertEquals("Hello, world", new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    void testSpillsToOwnerOnlyFile() throws IOException {
+        var reader = readerOf("{\"content\": \"" + base64Of(1000) + "\"}", 100);
+        reader.read();
+
+        var file = ((FileDocument) reader.getContents().get(0).toDocument()).getFile().toPath();
+        if (file.getFileSystem().supportedFileAttributeViews().contains("posix"))
+            assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(file));
+
+        reader.closeContents();
+    }
+
+    @Test
+    void testRejectsMalformedJson() {
+        assertThrows(JsonSyntaxException.class, readerOf("{\"filename\": \"a.txt\"", 1024)::read);
+        assertThrows(JsonSyntaxException.class, readerOf("{\"filename\" \"a.txt\"}", 1024)::read);
+        assertThrows(JsonSyntaxException.class, readerOf("{} {}", 1024)::read);
+    }
+
+    @Test
+    void testEmptyBody() throws IOException {
+        assertNull(readerOf("  \n", 1024).read());
+    }
+
+    private static void assertRejectedAsBase64(String content, long threshold) throws IOException {
+        var reader = readerOf("{\"content\": \"" + content + "\"}", threshold);
+        try (var request = new StreamedRequest<>(gson.fromJson(reader.read(), Document.class), reader.getContents())) {
+            assertThrows(MalformedBodyException.class, () -> request.body().getDecodedContent(request));
+        }
+    }
+
+    private static String base64Of(int length) {
+        var bytes = new byte[length];
+        for (var i = 0; i < bytes.length; i++)
+            bytes[i] = (byte) i;
+
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,25 @@
+package digital.slovensko.autogram.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DocumentFormatTest {
+    @Test
+    public void testDetectsFormatFromMagicBytes() {
+        assertEquals(DocumentFormat.PDF, DocumentFormat.detect("%PDF-1.7".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(DocumentFormat.ZIP, DocumentFormat.detect(new byte[]{'P', 'K', 3, 4}));
+        assertEquals(DocumentFormat.CMS, DocumentFormat.detect(new byte[]{0x30, (byte) 0x82, 0x01}));
+        assertEquals(DocumentFormat.XML, DocumentFormat.detect("<?xml version=\"1.0\"?><a/>".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(DocumentFormat.XML, DocumentFormat.detect(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF, '<', 'a'}));
+    }
+
+    @Test
+    public void testLeavesOtherContentToFactories() {
+        assertEquals(DocumentFormat.UNKNOWN, DocumentFormat.detect(new byte[0]));
+        assertEquals(DocumentFormat.UNKNOWN, DocumentFormat.detect("plain text".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(DocumentFormat.UNKNOWN, DocumentFormat.detect("  <a/>".getBytes(StandardCharsets.UTF_8)));
+    }
+}
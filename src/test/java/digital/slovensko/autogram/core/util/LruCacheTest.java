@@ -0,0 +1,43 @@
+package digital.slovensko.autogram.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LruCacheTest {
+    @Test
+    public void testEvictsLeastRecentlyUsedEntry() {
+        var cache = new LruCache<String, String>(2);
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.get("a");
+        cache.put("c", "C");
+
+        assertEquals("A", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("C", cache.get("c"));
+    }
+
+    @Test
+    public void testEvictsByWeight() {
+        var cache = new LruCache<String, String>(10, 5, value -> value.length());
+        cache.put("a", "aaa");
+        cache.put("b", "bb");
+        cache.put("c", "cc");
+
+        assertNull(cache.get("a"));
+        assertEquals(4, cache.getWeight());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testCountsHitsAndMisses() {
+        var cache = new LruCache<String, String>(2);
+        cache.put("a", "A");
+        cache.get("a");
+        cache.get("b");
+
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+}
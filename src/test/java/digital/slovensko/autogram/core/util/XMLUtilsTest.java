@@ -181,4 +181,32 @@ public class XMLUtilsTest {
         var schema = factory.newSchema(new StreamSource(new StringReader(xsd)));
         assertNotNull(schema);
     }
+
+    @Test
+    public void testReusedSecureDocumentBuilderStaysSecure() throws Exception {
+        var first = XMLUtils.getSecureDocumentBuilder();
+        first.parse(new InputSource(new StringReader("<foo>bar</foo>")));
+
+        var builder = XMLUtils.getSecureDocumentBuilder();
+        assertSame(first, builder);
+
+        var xml = "<!DOCTYPE foo [<!ENTITY xxe SYSTEM \"file:///tmp/test.txt\">]><foo>&xxe;</foo>";
+        try {
+            builder.parse(new InputSource(new StringReader(xml)));
+            fail("Expected an exception due to DOCTYPE declaration with external entity");
+        } catch (Exception e) {
+            assertTrue(e.getMessage().contains("DOCTYPE is disallowed") || e.getMessage().contains("Access to external DTD"));
+        }
+    }
+
+    @Test
+    public void testReusedStylesheetDocumentBuilderIgnoresExternalEntities() throws Exception {
+        XMLUtils.getSecureStylesheetDocumentBuilder().parse(new InputSource(new StringReader("<foo>bar</foo>")));
+
+        var builder = XMLUtils.getSecureStylesheetDocumentBuilder();
+        var xml = "<!DOCTYPE foo [<!ENTITY xxe SYSTEM \"file:///etc/hostname\">]><foo>&xxe;</foo>";
+        var document = builder.parse(new InputSource(new StringReader(xml)));
+
+        assertEquals("", document.getDocumentElement().getTextContent());
+    }
 }
@@ -0,0 +1,142 @@
+package digital.slovensko.autogram.core.validation;
+
+import com.sun.net.httpserver.HttpServer;
+import eu.europa.esig.dss.service.http.commons.CommonsDataLoader;
+import eu.europa.esig.dss.spi.client.http.DataLoader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingCRLDataLoaderTest {
+    private static final byte[] CRL = "stand-in crl".getBytes(StandardCharsets.UTF_8);
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private String url;
+
+    @BeforeEach
+    public void startStandInCa() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/ca.crl", exchange -> {
+            requests.incrementAndGet();
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            exchange.sendResponseHeaders(200, CRL.length);
+            try (var body = exchange.getResponseBody()) {
+                body.write(CRL);
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/ca.crl";
+    }
+
+    @AfterEach
+    public void stopStandInCa() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testConcurrentMissesDownloadOnce() throws Exception {
+        var loader = new CachingCRLDataLoader(new CommonsDataLoader(), Duration.ofMinutes(5), null);
+
+        var tasks = new ArrayList<Callable<byte[]>>();
+        for (var i = 0; i < 8; i++)
+            tasks.add(() -> loader.get(url));
+
+        try (var executor = Executors.newFixedThreadPool(8)) {
+            for (var result : executor.invokeAll(tasks))
+                assertArrayEquals(CRL, result.get());
+        }
+
+        assertEquals(1, requests.get());
+        assertArrayEquals(CRL, loader.get(url));
+        assertEquals(1, requests.get());
+        assertTrue(loader.getHits() >= 1);
+    }
+
+    @Test
+    public void testPersistedCrlIsReusedAfterRestart(@TempDir Path directory) {
+        new CachingCRLDataLoader(new CommonsDataLoader(), Duration.ofMinutes(5), directory).get(url);
+        var restarted = new CachingCRLDataLoader(new CommonsDataLoader(), Duration.ofMinutes(5), directory);
+
+        assertArrayEquals(CRL, restarted.get(url));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testSettingDirectoryKeepsCachedCrls(@TempDir Path directory) {
+        var loader = new CachingCRLDataLoader(new CommonsDataLoader(), Duration.ofMinutes(5), null);
+        loader.get(url);
+        loader.setDirectory(directory);
+
+        assertArrayEquals(CRL, loader.get(url));
+        assertEquals(1, requests.get());
+        assertEquals(1, loader.getHits());
+    }
+
+    @Test
+    public void testDeserializedLoaderDownloadsAndPersists(@TempDir Path directory) throws Exception {
+        var loader = new CachingCRLDataLoader(new SerializableDataLoader(), Duration.ofMinutes(5), directory);
+
+        var bytes = new ByteArrayOutputStream();
+        try (var output = new ObjectOutputStream(bytes)) {
+            output.writeObject(loader);
+        }
+        CachingCRLDataLoader deserialized;
+        try (var input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            deserialized = (CachingCRLDataLoader) input.readObject();
+        }
+
+        assertArrayEquals(CRL, deserialized.get(url));
+        assertEquals(1, requests.get());
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    // CommonsDataLoader holds non-serializable HTTP client settings
+    private static class SerializableDataLoader implements DataLoader {
+        @Override
+        public byte[] get(String url) {
+            return new CommonsDataLoader().get(url);
+        }
+
+        @Override
+        public DataAndUrl get(List<String> urlStrings) {
+            return new CommonsDataLoader().get(urlStrings);
+        }
+
+        @Override
+        public byte[] post(String url, byte[] content) {
+            return new CommonsDataLoader().post(url, content);
+        }
+
+        @Override
+        public void setContentType(String contentType) {
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package digital.slovensko.autogram.core.validation;
+
+import eu.europa.esig.dss.enumerations.RevocationOrigin;
+import eu.europa.esig.dss.model.x509.CertificateToken;
+import eu.europa.esig.dss.spi.DSSRevocationUtils;
+import eu.europa.esig.dss.spi.x509.revocation.ocsp.OCSPSource;
+import eu.europa.esig.dss.spi.x509.revocation.ocsp.OCSPToken;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cert.ocsp.BasicOCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.RespID;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.security.KeyPairGenerator;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingOCSPSourceTest {
+    private static CertificateToken issuer;
+    private static CertificateToken certificate;
+    private static OCSPToken response;
+
+    @BeforeAll
+    public static void createResponse() throws Exception {
+        var generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        var issuerKeys = generator.generateKeyPair();
+        var signer = new JcaContentSignerBuilder("SHA256withRSA").build(issuerKeys.getPrivate());
+        var now = System.currentTimeMillis();
+        var notBefore = new Date(now - 60_000);
+        var notAfter = new Date(now + 24 * 60 * 60 * 1000);
+
+        var issuerName = new X500Name("CN=Stand-in CA");
+        var issuerHolder = new JcaX509v3CertificateBuilder(issuerName, BigInteger.ONE, notBefore, notAfter, issuerName,
+                issuerKeys.getPublic()).build(signer);
+        var certificateHolder = new JcaX509v3CertificateBuilder(issuerName, BigInteger.TWO, notBefore, notAfter,
+                new X500Name("CN=Stand-in signer"), generator.generateKeyPair().getPublic()).build(signer);
+        issuer = toToken(issuerHolder);
+        certificate = toToken(certificateHolder);
+
+        var digestCalculator = new JcaDigestCalculatorProviderBuilder().build().get(CertificateID.HASH_SHA1);
+        var certificateId = new CertificateID(digestCalculator, issuerHolder, certificateHolder.getSerialNumber());
+        var basicResponse = new BasicOCSPRespBuilder(new RespID(issuerName))
+                .addResponse(certificateId, CertificateStatus.GOOD, new Date(now), new Date(now + 60 * 60 * 1000))
+                .build(signer, new X509CertificateHolder[]{issuerHolder}, new Date(now));
+
+        response = new OCSPToken(basicResponse, DSSRevocationUtils.getLatestSingleResponse(basicResponse, certificate, issuer),
+                certificate, issuer);
+        response.setSourceURL("http://localhost/ocsp");
+        response.setExternalOrigin(RevocationOrigin.EXTERNAL);
+    }
+
+    @Test
+    public void testEveryCallGetsItsOwnToken() {
+        var requests = new AtomicInteger();
+        OCSPSource delegate = (certificateToken, issuerCertificateToken) -> {
+            requests.incrementAndGet();
+            return response;
+        };
+        var source = new CachingOCSPSource(delegate, Duration.ofMinutes(5));
+
+        var first = source.getRevocationToken(certificate, issuer);
+        var second = source.getRevocationToken(certificate, issuer);
+
+        assertEquals(1, requests.get());
+        assertNotSame(first, second);
+        assertNotSame(response, first);
+        assertArrayEquals(response.getEncoded(), second.getEncoded());
+        assertEquals(response.getNextUpdate(), second.getNextUpdate());
+        assertEquals("http://localhost/ocsp", second.getSourceURL());
+        assertEquals(RevocationOrigin.EXTERNAL, second.getExternalOrigin());
+
+        first.setExternalOrigin(RevocationOrigin.CACHED);
+        assertEquals(RevocationOrigin.EXTERNAL, source.getRevocationToken(certificate, issuer).getExternalOrigin());
+    }
+
+    @Test
+    public void testMissingResponseIsNotCached() {
+        var requests = new AtomicInteger();
+        var source = new CachingOCSPSource((certificateToken, issuerCertificateToken) -> {
+            requests.incrementAndGet();
+            return null;
+        }, Duration.ofMinutes(5));
+
+        assertNull(source.getRevocationToken(certificate, issuer));
+        assertNull(source.getRevocationToken(certificate, issuer));
+        assertEquals(2, requests.get());
+    }
+
+    private static CertificateToken toToken(X509CertificateHolder holder) throws Exception {
+        return new CertificateToken(new JcaX509CertificateConverter().getCertificate(holder));
+    }
+}
@@ -0,0 +1,140 @@
+package digital.slovensko.autogram.core.validation;
+
+import eu.europa.esig.dss.enumerations.Indication;
+import eu.europa.esig.dss.enumerations.KeyUsageBit;
+import eu.europa.esig.dss.enumerations.MatchingCriteriaIndicator;
+import eu.europa.esig.dss.model.timedependent.TimeDependentValues;
+import eu.europa.esig.dss.model.tsl.CompositeCondition;
+import eu.europa.esig.dss.model.tsl.ConditionForQualifiers;
+import eu.europa.esig.dss.model.tsl.KeyUsageCondition;
+import eu.europa.esig.dss.model.tsl.PolicyIdCondition;
+import eu.europa.esig.dss.model.tsl.TLInfo;
+import eu.europa.esig.dss.model.tsl.TrustProperties;
+import eu.europa.esig.dss.model.tsl.TrustServiceStatusAndInformationExtensions;
+import eu.europa.esig.dss.model.tsl.builder.TrustServiceProviderBuilder;
+import eu.europa.esig.dss.model.x509.CertificateToken;
+import eu.europa.esig.dss.spi.tsl.TrustedListsCertificateSource;
+import eu.europa.esig.dss.spi.x509.KeyStoreCertificateSource;
+import eu.europa.esig.dss.tsl.dto.DownloadCacheDTO;
+import eu.europa.esig.dss.tsl.dto.ParsingCacheDTO;
+import eu.europa.esig.dss.tsl.dto.ValidationCacheDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class TrustedListsSnapshotFileTest {
+    private static final String QC_WITH_QSCD = "http://uri.etsi.org/TrstSvc/TrustedList/SvcInfoExt/QCWithQSCD";
+
+    @Test
+    public void testSavedSnapshotLoadsTheSameTrustServices(@TempDir Path directory) {
+        var file = directory.resolve("tl-snapshot");
+        var certificate = getCertificate();
+        TrustedListsSnapshotFile.save(file, createSource(certificate), 27);
+
+        var loaded = TrustedListsSnapshotFile.load(file, Duration.ofDays(1));
+
+        assertNotNull(loaded);
+        assertEquals(27, loaded.loadedTLs());
+        assertEquals(List.of(certificate), loaded.source().getCertificates());
+
+        var trustProperties = loaded.source().getTrustServices(certificate).get(0);
+        assertEquals("https://tl.example/sk.xml", trustProperties.getTLInfo().getUrl());
+        assertEquals("SK", trustProperties.getTLInfo().getParsingCacheInfo().getTerritory());
+        assertEquals(Indication.TOTAL_PASSED, trustProperties.getTLInfo().getValidationCacheInfo().getIndication());
+        assertEquals("SK", trustProperties.getTrustServiceProvider().getTerritory());
+
+        var service = trustProperties.getTrustService().getList().get(0);
+        assertEquals("http://uri.etsi.org/TrstSvc/Svctype/CA/QC", service.getType());
+        assertEquals(new Date(1500000000000L), service.getStartDate());
+        assertEquals(List.of(QC_WITH_QSCD), service.getConditionsForQualifiers().get(0).getQualifiers());
+
+        var condition = (CompositeCondition) service.getConditionsForQualifiers().get(0).getCondition();
+        assertEquals(MatchingCriteriaIndicator.ALL, condition.getMatchingCriteriaIndicator());
+        assertEquals(2, condition.getChildren().size());
+        assertEquals("1.2.3.4", ((PolicyIdCondition) condition.getChildren().get(1)).getPolicyOid());
+    }
+
+    @Test
+    public void testOldSnapshotIsNotLoaded(@TempDir Path directory) throws InterruptedException {
+        var file = directory.resolve("tl-snapshot");
+        TrustedListsSnapshotFile.save(file, createSource(getCertificate()), 27);
+        Thread.sleep(20);
+
+        assertNull(TrustedListsSnapshotFile.load(file, Duration.ofMillis(10)));
+    }
+
+    @Test
+    public void testDamagedSnapshotIsNotLoaded(@TempDir Path directory) throws IOException {
+        var file = directory.resolve("tl-snapshot");
+        TrustedListsSnapshotFile.save(file, createSource(getCertificate()), 27);
+
+        var content = Files.readAllBytes(file);
+        content[content.length - 2] ^= 1;
+        Files.write(file, content);
+
+        assertNull(TrustedListsSnapshotFile.load(file, Duration.ofDays(1)));
+    }
+
+    @Test
+    public void testSnapshotWritableByOthersIsNotLoaded(@TempDir Path directory) throws IOException {
+        var file = directory.resolve("tl-snapshot");
+        TrustedListsSnapshotFile.save(file, createSource(getCertificate()), 27);
+        assumeTrue(file.getFileSystem().supportedFileAttributeViews().contains("posix"));
+
+        assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(file));
+        assertNotNull(TrustedListsSnapshotFile.load(file, Duration.ofDays(1)));
+
+        Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-rw-rw-"));
+        assertNull(TrustedListsSnapshotFile.load(file, Duration.ofDays(1)));
+    }
+
+    private static CertificateToken getCertificate() {
+        var keystore = SignatureValidator.class.getResourceAsStream("lotlKeyStore.p12");
+        return new KeyStoreCertificateSource(keystore, "PKCS12", "dss-password".toCharArray()).getCertificates().get(0);
+    }
+
+    private static TrustedListsCertificateSource createSource(CertificateToken certificate) {
+        var parsing = new ParsingCacheDTO();
+        parsing.setTerritory("SK");
+        parsing.setSequenceNumber(42);
+        var validation = new ValidationCacheDTO();
+        validation.setIndication(Indication.TOTAL_PASSED);
+        var tlInfo = new TLInfo(new DownloadCacheDTO(), parsing, validation, "https://tl.example/sk.xml");
+
+        var provider = new TrustServiceProviderBuilder()
+                .setNames(Map.of("EN", List.of("Example QTSP")))
+                .setTerritory("SK")
+                .build();
+
+        var condition = new CompositeCondition(MatchingCriteriaIndicator.ALL);
+        condition.addChild(new KeyUsageCondition(KeyUsageBit.NON_REPUDIATION, true));
+        condition.addChild(new PolicyIdCondition("1.2.3.4"));
+
+        var service = new TrustServiceStatusAndInformationExtensions.TrustServiceStatusAndInformationExtensionsBuilder()
+                .setNames(Map.of("EN", List.of("Example CA")))
+                .setType("http://uri.etsi.org/TrstSvc/Svctype/CA/QC")
+                .setStatus("http://uri.etsi.org/TrstSvc/TrustedList/Svcstatus/granted")
+                .setConditionsForQualifiers(List.of(new ConditionForQualifiers(condition, List.of(QC_WITH_QSCD))))
+                .setStartDate(new Date(1500000000000L))
+                .build();
+
+        var trustProperties = new HashMap<CertificateToken, List<TrustProperties>>();
+        trustProperties.put(certificate, List.of(new TrustProperties(tlInfo, provider, new TimeDependentValues<>(List.of(service)))));
+
+        var source = new TrustedListsCertificateSource();
+        source.setTrustPropertiesByCertificates(trustProperties);
+        return source;
+    }
+}
@@ -0,0 +1,59 @@
+package digital.slovensko.autogram.core.validation;
+
+import digital.slovensko.autogram.core.server.dto.ValidationResponseBody;
+import eu.europa.esig.dss.enumerations.Indication;
+import eu.europa.esig.dss.enumerations.SubIndication;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ValidationResultCacheTest {
+    private static final ValidationResponseBody BODY = new ValidationResponseBody("ASiC_E", "XAdES", List.of(), null, null);
+
+    @Test
+    void testResultWithoutRevocationDataExpiresAfterMaxTimeToLive() throws InterruptedException {
+        try (var cache = new ValidationResultCache(4, Duration.ofMillis(10))) {
+            cache.put("key", BODY, List.of());
+            assertSame(BODY, cache.get("key"));
+
+            Thread.sleep(20);
+            assertNull(cache.get("key"));
+        }
+    }
+
+    @Test
+    void testResultExpiresAtEarliestRevocationNextUpdate() throws InterruptedException {
+        try (var cache = new ValidationResultCache(4, Duration.ofHours(1))) {
+            var soon = new Date(System.currentTimeMillis() + 10);
+            var later = new Date(System.currentTimeMillis() + Duration.ofDays(1).toMillis());
+            cache.put("key", BODY, Arrays.asList(later, null, soon));
+            assertSame(BODY, cache.get("key"));
+
+            Thread.sleep(20);
+            assertNull(cache.get("key"));
+        }
+    }
+
+    @Test
+    void testResultWithOutdatedRevocationDataIsNotCached() {
+        try (var cache = new ValidationResultCache(4, Duration.ofHours(1))) {
+            cache.put("key", BODY, List.of(new Date(System.currentTimeMillis() - 1000)));
+
+            assertNull(cache.get("key"));
+        }
+    }
+
+    @Test
+    void testOnlyIndeterminateResultsWaitingForRevocationOrTimestampsAreTransient() {
+        assertTrue(ValidationResultCache.isTransient(Indication.INDETERMINATE, SubIndication.TRY_LATER));
+        assertTrue(ValidationResultCache.isTransient(Indication.INDETERMINATE, SubIndication.OUT_OF_BOUNDS_NO_POE));
+        assertFalse(ValidationResultCache.isTransient(Indication.INDETERMINATE, SubIndication.FORMAT_FAILURE));
+        assertFalse(ValidationResultCache.isTransient(Indication.TOTAL_PASSED, null));
+        assertFalse(ValidationResultCache.isTransient(Indication.TOTAL_FAILED, SubIndication.HASH_FAILURE));
+    }
+}